@@ -0,0 +1,203 @@
+package analizadorsintactico.bench;
+
+import analizadorsintactico.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Benchmarks del Lexer, el Parser y el Traductor sobre los documentos de
+ * DocumentGenerator.
+ *
+ * Para cada documento se mide cada fase por separado y el pipeline completo:
+ *     lexer     Lexer.tokenize() sobre el texto en memoria
+ *     parser    Parser.parse() sobre los tokens ya generados (solo validación)
+ *     traductor Traductor.translate() sobre los tokens, hacia un stream nulo
+ *     pipeline  archivo → Lexer → Traductor.translateAndWrite() → archivo
+ *     pipelined igual que pipeline, con el lexer en otro hilo (PipelinedLexer)
+ *     validator Validator sobre los bytes en memoria (sin tokens)
+ *     tree      Traductor.translate() desde un DocumentTree ya construido
+ *               (no se mide en documentos inválidos, que no tienen árbol)
+ *
+ * Cada medición hace primero unas iteraciones de calentamiento y luego repite
+ * la operación hasta cumplir el tiempo pedido. Se informa el tiempo medio por
+ * operación, el rendimiento en MB/s (del JSON de entrada) y en tokens/s, y la
+ * memoria asignada por operación y por segundo según el ThreadMXBean (el
+ * equivalente a '-prof gc' de JMH: todas las fases corren en este hilo,
+ * salvo el lexer de pipelined, cuya memoria no se cuenta).
+ *
+ * Uso:
+ *     ant bench
+ *     java -cp build/classes:build/bench analizadorsintactico.bench.BenchmarkSuite
+ *          [--size MB] [--seconds s] [--warmup s] [--only DEEP,WIDE,...] [--phase lexer,...]
+ */
+public class BenchmarkSuite {
+    private static final long SEED = 42;
+    private static final String[] PHASES = {"lexer", "parser", "traductor", "pipeline", "pipelined", "validator", "tree"};
+
+    // evita que el JIT descarte el trabajo medido
+    private static volatile long sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Una operación a medir; devuelve algo derivado del resultado para el sink. */
+    private interface Operation {
+        long run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        double sizeMb = 8;
+        double seconds = 3;
+        double warmup = 2;
+        List<DocumentGenerator> generators = new ArrayList<>(List.of(DocumentGenerator.values()));
+        List<String> phases = new ArrayList<>(List.of(PHASES));
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("Falta el valor de " + arg);
+                return;
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--size" -> sizeMb = Double.parseDouble(value);
+                case "--seconds" -> seconds = Double.parseDouble(value);
+                case "--warmup" -> warmup = Double.parseDouble(value);
+                case "--only" -> {
+                    generators.clear();
+                    for (String name : value.split(",")) generators.add(DocumentGenerator.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                }
+                case "--phase" -> phases = List.of(value.toLowerCase(Locale.ROOT).split(","));
+                default -> {
+                    usage("Opción desconocida: " + arg);
+                    return;
+                }
+            }
+        }
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.err.println("Aviso: la JVM no informa la memoria asignada por hilo");
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        Path dir = Files.createTempDirectory("bench-analizador");
+        try {
+            System.out.printf(Locale.ROOT, "%-13s %-10s %10s %10s %12s %14s %12s%n",
+                    "documento", "fase", "ms/op", "MB/s", "Mtokens/s", "asignado/op", "asig. MB/s");
+            for (DocumentGenerator generator : generators) {
+                String json = generator.generate((int) (sizeMb * 1024 * 1024), SEED);
+                byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                Path input = dir.resolve(generator.name().toLowerCase(Locale.ROOT) + ".json");
+                Files.write(input, bytes);
+                String xmlOut = dir.resolve("salida.xml").toString();
+                String errOut = dir.resolve("errores.txt").toString();
+
+                TokenBuffer tokens = Lexer.ofContent(json).tokenize();
+                Validator validator = new Validator();
+                DocumentTree tree = buildTree(tokens);
+                for (String phase : phases) {
+                    if (phase.equals("tree") && tree == null) continue;
+                    Operation op = switch (phase) {
+                        case "lexer" -> () -> Lexer.ofContent(json).tokenize().size();
+                        case "parser" -> () -> {
+                            Parser parser = new Parser(tokens.cursor());
+                            parser.parse();
+                            return parser.getDiagnostics().size();
+                        };
+                        case "traductor" -> () -> {
+                            Traductor traductor = new Traductor(tokens.cursor());
+                            traductor.translate(OutputStream.nullOutputStream());
+                            return traductor.getXmlBytes();
+                        };
+                        case "pipeline" -> () -> {
+                            Traductor traductor = new Traductor(new Lexer(input.toString()).tokenize().cursor());
+                            traductor.translateAndWrite(xmlOut, errOut);
+                            return traductor.getXmlBytes();
+                        };
+                        case "pipelined" -> () -> {
+                            try (PipelinedLexer lexer = new PipelinedLexer(input.toString())) {
+                                Traductor traductor = new Traductor(lexer);
+                                traductor.translateAndWrite(xmlOut, errOut);
+                                return traductor.getXmlBytes();
+                            }
+                        };
+                        case "tree" -> () -> {
+                            Traductor traductor = new Traductor(tree);
+                            traductor.translate(OutputStream.nullOutputStream());
+                            return traductor.getXmlBytes();
+                        };
+                        case "validator" -> () -> validator.validate(bytes, 0, bytes.length).offset();
+                        default -> throw new IllegalArgumentException("Fase desconocida: " + phase);
+                    };
+                    report(generator.name(), phase, measure(op, warmup, seconds), bytes.length, tokens.size());
+                }
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : files.toList()) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /** Resultado de una medición: operaciones, tiempo y bytes asignados en total. */
+    private record Measurement(long ops, long nanos, long allocated) { }
+
+    private static Measurement measure(Operation op, double warmupSeconds, double seconds) throws IOException {
+        runFor(op, warmupSeconds, 1);
+        return runFor(op, seconds, 3);
+    }
+
+    private static Measurement runFor(Operation op, double seconds, int minOps) throws IOException {
+        long budget = (long) (seconds * 1e9);
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long ops = 0;
+        long acc = 0;
+        long elapsed;
+        do {
+            acc += op.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budget || ops < minOps);
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        sink += acc;
+        return new Measurement(ops, elapsed, allocated);
+    }
+
+    private static DocumentTree buildTree(TokenBuffer tokens) {
+        try {
+            return DocumentTree.build(tokens);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void report(String document, String phase, Measurement m, long inputBytes, long tokens) {
+        double secondsPerOp = m.nanos() / 1e9 / m.ops();
+        double mb = inputBytes / (1024.0 * 1024.0);
+        double allocatedPerOp = (double) m.allocated() / m.ops();
+        System.out.printf(Locale.ROOT, "%-13s %-10s %10.2f %10.2f %12.2f %14s %12.1f%n",
+                document, phase,
+                secondsPerOp * 1e3,
+                mb / secondsPerOp,
+                tokens / secondsPerOp / 1e6,
+                formatBytes(allocatedPerOp),
+                allocatedPerOp / secondsPerOp / (1024.0 * 1024.0));
+    }
+
+    private static String formatBytes(double bytes) {
+        if (bytes >= 1024 * 1024) return String.format(Locale.ROOT, "%.1f MB", bytes / (1024 * 1024));
+        if (bytes >= 1024) return String.format(Locale.ROOT, "%.1f KB", bytes / 1024);
+        return String.format(Locale.ROOT, "%.0f B", bytes);
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Uso: BenchmarkSuite [--size MB] [--seconds s] [--warmup s] "
+                + "[--only " + String.join(",", Arrays.stream(DocumentGenerator.values()).map(Enum::name).toList()) + "] "
+                + "[--phase " + String.join(",", PHASES) + "]");
+    }
+}
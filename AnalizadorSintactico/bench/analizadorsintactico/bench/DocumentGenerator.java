@@ -0,0 +1,176 @@
+package analizadorsintactico.bench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Generadores de documentos JSON sintéticos para los benchmarks.
+ *
+ * Cada generador produce un documento de aproximadamente el tamaño pedido
+ * repitiendo una misma forma (anidamiento profundo, objetos anchos, cadenas
+ * largas o de varios MB, muchos números o errores sintácticos). Con la misma semilla el
+ * documento generado es siempre el mismo, así las mediciones son comparables.
+ * write() genera el mismo documento directo a un stream, para tamaños que no
+ * entran en memoria (ScalingSuite).
+ *
+ * Los documentos con errores solo tienen errores sintácticos, para medir la
+ * recuperación del Parser (Panic Mode) y no la del lexer.
+ */
+public enum DocumentGenerator {
+    /** Objetos anidados cientos de niveles: [{"n0":{"n1":...{"v":1}...}}, ...] */
+    DEEP {
+        @Override
+        void appendRecord(StringBuilder sb, Random random, int index) {
+            int depth = 100 + random.nextInt(200);
+            sb.append("{\"n0\":");
+            for (int d = 1; d < depth; d++) sb.append("{\"n").append(d).append("\":");
+            sb.append("{\"v\":").append(index).append('}');
+            for (int d = 0; d < depth; d++) sb.append('}');
+        }
+    },
+
+    /** Objetos con miles de atributos escalares. */
+    WIDE {
+        @Override
+        void appendRecord(StringBuilder sb, Random random, int index) {
+            sb.append('{');
+            for (int k = 0; k < 2000; k++) {
+                if (k > 0) sb.append(',');
+                sb.append("\"campo").append(k).append("\":");
+                appendScalar(sb, random);
+            }
+            sb.append('}');
+        }
+    },
+
+    /** Pocos atributos con cadenas de decenas de KB, con caracteres a escapar. */
+    LONG_STRINGS {
+        @Override
+        void appendRecord(StringBuilder sb, Random random, int index) {
+            sb.append("{\"id\":").append(index).append(",\"texto\":\"");
+            int length = 16 * 1024 + random.nextInt(48 * 1024);
+            for (int i = 0; i < length; i++) {
+                int r = random.nextInt(64);
+                sb.append(r == 0 ? '<' : r == 1 ? '&' : r == 2 ? 'ñ' : r < 10 ? ' ' : (char) ('a' + r % 26));
+            }
+            sb.append("\"}");
+        }
+    },
+
+    /** Cadenas de varios MB, con secuencias de escape y caracteres a escapar en XML. */
+    HUGE_STRINGS {
+        @Override
+        void appendRecord(StringBuilder sb, Random random, int index) {
+            sb.append("{\"id\":").append(index).append(",\"blob\":\"");
+            int length = 1024 * 1024 + random.nextInt(3 * 1024 * 1024);
+            for (int i = 0; i < length; i++) {
+                int r = random.nextInt(256);
+                switch (r) {
+                    case 0 -> sb.append("\\n");
+                    case 1 -> sb.append("\\\"");
+                    case 2 -> sb.append("\\u00e9");
+                    case 3 -> sb.append('<');
+                    case 4 -> sb.append('&');
+                    default -> sb.append(r < 40 ? ' ' : (char) ('a' + r % 26));
+                }
+            }
+            sb.append("\"}");
+        }
+    },
+
+    /** Arreglos de objetos con valores numéricos (enteros, negativos y decimales). */
+    NUMERIC {
+        @Override
+        void appendRecord(StringBuilder sb, Random random, int index) {
+            sb.append("{\"serie\":").append(index).append(",\"muestras\":[");
+            for (int k = 0; k < 100; k++) {
+                if (k > 0) sb.append(',');
+                sb.append("{\"x\":").append(random.nextInt(100000))
+                  .append(",\"y\":").append(-random.nextInt(1000))
+                  .append(",\"z\":").append(random.nextInt(1000)).append('.').append(random.nextInt(1000))
+                  .append('}');
+            }
+            sb.append("]}");
+        }
+    },
+
+    /** Registros mixtos con un error sintáctico cada pocos registros (Panic Mode). */
+    ERRORS {
+        @Override
+        void appendRecord(StringBuilder sb, Random random, int index) {
+            sb.append("{\"id\":").append(index).append(",\"nombre\":\"registro ").append(index).append('"');
+            switch (random.nextInt(8)) {
+                case 0 -> sb.append(",\"sin_dos_puntos\" 1");     // falta ':'
+                case 1 -> sb.append(",\"sin_valor\":");           // falta el valor
+                case 2 -> sb.append(",,\"coma_doble\":true");     // ',' de más
+                case 3 -> sb.append(",\"lista\":[1,2]");          // escalares en element-list
+                default -> sb.append(",\"ok\":null");
+            }
+            sb.append(",\"hijos\":[{\"edad\":").append(random.nextInt(90)).append("}]}");
+        }
+    };
+
+    private static final String[] WORDS = {"true", "false", "null"};
+
+    /** Agrega un registro (un elemento del arreglo raíz) al documento. */
+    abstract void appendRecord(StringBuilder sb, Random random, int index);
+
+    /** false para los documentos con errores sintácticos, que no generan XML. */
+    public boolean isValid() {
+        return this != ERRORS;
+    }
+
+    /** Genera un arreglo raíz con registros hasta superar targetChars caracteres. */
+    public String generate(int targetChars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(targetChars + 64 * 1024);
+        sb.append("[\n");
+        int index = 0;
+        while (sb.length() < targetChars) {
+            if (index > 0) sb.append(",\n");
+            appendRecord(sb, random, index++);
+        }
+        sb.append("\n]\n");
+        return sb.toString();
+    }
+
+    /**
+     * Escribe en out, en UTF-8, un arreglo raíz con registros hasta superar
+     * targetBytes bytes, sin armar el documento en memoria: solo un registro
+     * por vez. Si onRecord no es null, recibe el texto de cada registro.
+     *
+     * @return los bytes escritos
+     */
+    public long write(OutputStream out, long targetBytes, long seed, Consumer<String> onRecord) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        long written = write(out, "[\n");
+        int index = 0;
+        while (written < targetBytes) {
+            if (index > 0) written += write(out, ",\n");
+            sb.setLength(0);
+            appendRecord(sb, random, index++);
+            String record = sb.toString();
+            if (onRecord != null) onRecord.accept(record);
+            written += write(out, record);
+        }
+        return written + write(out, "\n]\n");
+    }
+
+    private static long write(OutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    static void appendScalar(StringBuilder sb, Random random) {
+        switch (random.nextInt(4)) {
+            case 0 -> sb.append(random.nextInt(1000000));
+            case 1 -> sb.append('"').append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36)).append('"');
+            case 2 -> sb.append(WORDS[random.nextInt(WORDS.length)]);
+            default -> sb.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+        }
+    }
+}
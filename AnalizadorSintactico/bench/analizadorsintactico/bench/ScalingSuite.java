@@ -0,0 +1,471 @@
+package analizadorsintactico.bench;
+
+import analizadorsintactico.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Prueba de escala de punta a punta: traduce documentos de DocumentGenerator
+ * de tamaño creciente (de pocos MB a varios GB) con el programa completo,
+ * cada uno en una JVM aparte con un -Xmx fijo, y verifica que:
+ *     - termine bien, sin OutOfMemoryError (la JVM hija corre con
+ *       -XX:+ExitOnOutOfMemoryError) y dentro del tiempo límite;
+ *     - el XML generado empiece con el esperado (ver más abajo) y sea
+ *       idéntico byte a byte al de referencia;
+ *     - el tiempo por MB no crezca más de --max-slowdown veces de un tamaño
+ *       al siguiente (un crecimiento superlineal);
+ *     - con --max-rss, el pico de memoria residente no supere ese límite.
+ *
+ * El XML esperado está guardado en bench/golden: para cada documento, los
+ * primeros GOLDEN_BYTES (cortados en un fin de línea) de la traducción con la
+ * semilla SEED, revisados a mano. Como el generador es determinista, todo
+ * documento de ese tipo, del tamaño que sea, empieza con los mismos
+ * registros, así que su XML debe empezar con esos bytes; uno más corto debe
+ * ser un prefijo de ellos seguido del cierre de <array> y <root>. Es lo que
+ * detecta un cambio en el escape, los nombres de las etiquetas o la
+ * indentación, que no depende del código que se prueba. --write-golden los
+ * vuelve a generar con la versión actual (hay que revisar la diferencia
+ * antes de guardarlos).
+ *
+ * Además se arma un XML de referencia mientras se genera el documento: cada
+ * registro se traduce por separado en este proceso (un documento chico) y
+ * el resultado se concatena entre la cabecera y el cierre de <root><array>.
+ * Así la salida completa de un documento de varios GB se compara con la del
+ * mismo contenido traducido en partes de pocos KB o MB. Como usa el mismo
+ * Lexer y Traductor, solo muestra que las dos coinciden, no que sean
+ * correctas.
+ *
+ * El tiempo es el de la JVM hija completa, incluido el arranque. El pico de
+ * memoria residente (VmHWM) se lee de /proc mientras la JVM hija corre; en
+ * sistemas sin /proc se informa como "-". Con mmap incluye las páginas del
+ * archivo mapeado que estén en memoria, que el sistema libera si hace falta.
+ *
+ * Los modos son los lexers del programa: default (Lexer con TokenBuffer),
+ * stream, mmap y pipeline. Solo stream y mmap no cargan el documento entero
+ * en memoria, por eso son los que se prueban si no se indica --modes.
+ *
+ * Uso:
+ *     ant scaling
+ *     java -cp build/classes:build/bench analizadorsintactico.bench.ScalingSuite
+ *          [--sizes MB,MB,...] [--xmx 256m] [--modes stream,mmap,...] [--only DEEP,WIDE,...]
+ *          [--max-slowdown 2] [--max-rss MB] [--timeout s] [--dir directorio] [--report archivo.csv] [--keep]
+ *          [--golden bench/golden] [--write-golden]
+ */
+public class ScalingSuite {
+    private static final long SEED = 42;
+    private static final int GOLDEN_BYTES = 64 * 1024;
+    // cierre del XML de todo documento de DocumentGenerator (un arreglo raíz)
+    private static final byte[] CLOSING = "\t</array>\n</root>\n".getBytes(StandardCharsets.UTF_8);
+    private static final String[] MODES = {"default", "stream", "mmap", "pipeline"};
+    // código de salida de la JVM con -XX:+ExitOnOutOfMemoryError
+    private static final int OUT_OF_MEMORY_EXIT = 3;
+
+    /** Resultado de traducir un documento con un modo. */
+    private record Run(String document, String mode, long inputBytes, long nanos, long peakRss,
+                       long xmlBytes, String failure) {
+        boolean ok() {
+            return failure == null;
+        }
+
+        double secondsPerMb() {
+            return nanos / 1e9 / (inputBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<Double> sizes = List.of(1.0, 16.0, 128.0);
+        String xmx = "256m";
+        List<String> modes = List.of("stream", "mmap");
+        List<DocumentGenerator> generators = new ArrayList<>(
+                List.of(DocumentGenerator.DEEP, DocumentGenerator.WIDE, DocumentGenerator.HUGE_STRINGS));
+        double maxSlowdown = 2;
+        long maxRss = 0;
+        long timeoutSeconds = 3600;
+        Path dir = null;
+        Path report = null;
+        Path golden = Paths.get("bench", "golden");
+        boolean keep = false;
+        boolean writeGolden = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--keep")) {
+                keep = true;
+                continue;
+            }
+            if (arg.equals("--write-golden")) {
+                writeGolden = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                usage("Falta el valor de " + arg);
+                return;
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--sizes" -> sizes = Arrays.stream(value.split(",")).map(s -> Double.parseDouble(s.trim())).sorted().toList();
+                case "--xmx" -> xmx = value;
+                case "--modes" -> {
+                    modes = List.of(value.toLowerCase(Locale.ROOT).split(","));
+                    for (String mode : modes) {
+                        if (!List.of(MODES).contains(mode)) {
+                            usage("Modo desconocido: " + mode);
+                            return;
+                        }
+                    }
+                }
+                case "--only" -> {
+                    generators.clear();
+                    for (String name : value.split(",")) {
+                        DocumentGenerator generator = DocumentGenerator.valueOf(name.trim().toUpperCase(Locale.ROOT));
+                        if (!generator.isValid()) {
+                            usage(generator + " genera documentos inválidos, sin XML que comparar");
+                            return;
+                        }
+                        generators.add(generator);
+                    }
+                }
+                case "--max-slowdown" -> maxSlowdown = Double.parseDouble(value);
+                case "--max-rss" -> maxRss = (long) (Double.parseDouble(value) * 1024 * 1024);
+                case "--timeout" -> timeoutSeconds = Long.parseLong(value);
+                case "--dir" -> dir = Paths.get(value);
+                case "--report" -> report = Paths.get(value);
+                case "--golden" -> golden = Paths.get(value);
+                default -> {
+                    usage("Opción desconocida: " + arg);
+                    return;
+                }
+            }
+        }
+
+        if (writeGolden) {
+            writeGolden(golden, generators);
+            return;
+        }
+
+        boolean tempDir = dir == null;
+        dir = tempDir ? Files.createTempDirectory("scaling-analizador") : Files.createDirectories(dir);
+        List<Run> runs = new ArrayList<>();
+        try {
+            System.out.printf(Locale.ROOT, "%-13s %-9s %10s %10s %9s %11s %10s  %s%n",
+                    "documento", "modo", "MB", "s", "MB/s", "RSS pico", "XML MB", "resultado");
+            for (DocumentGenerator generator : generators) {
+                Path goldenFile = goldenFile(golden, generator);
+                byte[] expected = Files.exists(goldenFile) ? Files.readAllBytes(goldenFile) : null;
+                Map<String, Run> previous = new HashMap<>();
+                for (double sizeMb : sizes) {
+                    String name = generator.name().toLowerCase(Locale.ROOT) + "-" + formatSize(sizeMb);
+                    Path input = dir.resolve(name + ".json");
+                    Path reference = dir.resolve(name + ".ref.xml");
+                    System.err.println("Generando " + input.getFileName() + "...");
+                    long inputBytes = generate(generator, (long) (sizeMb * 1024 * 1024), input, reference);
+
+                    for (String mode : modes) {
+                        Path xml = dir.resolve(name + "." + mode + ".xml");
+                        Run run = translate(generator.name(), mode, input, inputBytes, xml, reference, dir, xmx, maxRss, timeoutSeconds);
+                        if (run.ok() && expected == null) {
+                            run = failed(run, "falta el XML esperado " + goldenFile + " (generarlo con --write-golden)");
+                        } else if (run.ok()) {
+                            long mismatch = goldenMismatch(xml, expected);
+                            if (mismatch >= 0) run = failed(run, "el XML difiere del esperado (" + goldenFile + ") en el byte " + mismatch);
+                        }
+                        Run last = previous.get(mode);
+                        if (run.ok() && last != null && last.ok()) {
+                            double slowdown = run.secondsPerMb() / last.secondsPerMb();
+                            if (slowdown > maxSlowdown) {
+                                run = failed(run, String.format(Locale.ROOT, "crecimiento superlineal: x%.2f s/MB respecto de %s MB",
+                                        slowdown, formatSize(last.inputBytes() / (1024.0 * 1024.0))));
+                            }
+                        }
+                        previous.put(mode, run);
+                        runs.add(run);
+                        print(run);
+                        if (!keep) Files.deleteIfExists(xml);
+                    }
+                    if (!keep) {
+                        Files.deleteIfExists(input);
+                        Files.deleteIfExists(reference);
+                    }
+                }
+            }
+        } finally {
+            if (!keep) {
+                Files.deleteIfExists(dir.resolve("errores.txt"));
+                Files.deleteIfExists(dir.resolve("salida.log"));
+                if (tempDir) Files.deleteIfExists(dir);
+            } else {
+                System.err.println("Archivos generados en " + dir);
+            }
+        }
+        if (report != null) writeReport(report, runs, xmx);
+
+        long failures = runs.stream().filter(r -> !r.ok()).count();
+        System.out.println(failures == 0
+                ? "Todas las traducciones pasaron (" + runs.size() + ")."
+                : "Fallaron " + failures + " de " + runs.size() + " traducciones.");
+        if (failures > 0) System.exit(1);
+    }
+
+    private static Path goldenFile(Path golden, DocumentGenerator generator) {
+        return golden.resolve(generator.name().toLowerCase(Locale.ROOT) + ".xml");
+    }
+
+    // Genera el XML esperado de cada documento con el Traductor actual
+    private static void writeGolden(Path golden, List<DocumentGenerator> generators) throws IOException {
+        Files.createDirectories(golden);
+        for (DocumentGenerator generator : generators) {
+            Path file = goldenFile(golden, generator);
+            Path reference = Files.createTempFile("golden", ".xml");
+            try {
+                // un documento apenas más grande que GOLDEN_BYTES: su XML lo supera
+                try (ReferenceWriter expected = new ReferenceWriter(reference)) {
+                    generator.write(OutputStream.nullOutputStream(), GOLDEN_BYTES, SEED, expected);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                byte[] prefix;
+                try (InputStream in = Files.newInputStream(reference)) {
+                    prefix = in.readNBytes(GOLDEN_BYTES);
+                }
+                int end = prefix.length;
+                while (end > 0 && prefix[end - 1] != '\n') end--;
+                Files.write(file, Arrays.copyOf(prefix, end));
+                System.out.println(file + ": " + end + " bytes");
+            } finally {
+                Files.deleteIfExists(reference);
+            }
+        }
+    }
+
+    /**
+     * Posición del primer byte en que xml se aparta del esperado, o -1 si
+     * empieza con él. Un XML más corto que el esperado debe ser un prefijo
+     * suyo seguido de CLOSING.
+     */
+    private static long goldenMismatch(Path xml, byte[] expected) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(xml)) {
+            head = in.readNBytes(expected.length);
+        }
+        if (head.length == expected.length) return Arrays.mismatch(head, expected);
+        int body = head.length - CLOSING.length;
+        if (body < 0) return 0;
+        int at = Arrays.mismatch(head, 0, body, expected, 0, body);
+        if (at >= 0) return at;
+        at = Arrays.mismatch(head, body, head.length, CLOSING, 0, CLOSING.length);
+        return at >= 0 ? body + at : -1;
+    }
+
+    /**
+     * Escribe el documento en input y el XML de referencia en reference;
+     * devuelve los bytes del documento.
+     */
+    private static long generate(DocumentGenerator generator, long targetBytes, Path input, Path reference) throws IOException {
+        try (OutputStream json = new BufferedOutputStream(Files.newOutputStream(input), 1 << 20);
+             ReferenceWriter expected = new ReferenceWriter(reference)) {
+            return generator.write(json, targetBytes, SEED, expected);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Arma el XML de referencia registro por registro: cada uno se traduce
+     * como un arreglo de un elemento y se conserva solo su <item>.
+     */
+    private static final class ReferenceWriter implements Consumer<String>, Closeable {
+        private final OutputStream out;
+        private final byte[] prefix;
+        private final byte[] suffix;
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+        ReferenceWriter(Path path) throws IOException {
+            // el documento vacío es exactamente la cabecera seguida del cierre
+            byte[] empty = translate("[]");
+            String text = new String(empty, StandardCharsets.UTF_8);
+            int split = text.lastIndexOf("\t</array>");
+            if (split < 0) throw new IllegalStateException("Traducción inesperada de []: " + text);
+            prefix = text.substring(0, split).getBytes(StandardCharsets.UTF_8);
+            suffix = text.substring(split).getBytes(StandardCharsets.UTF_8);
+            out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 20);
+            out.write(prefix);
+        }
+
+        @Override
+        public void accept(String json) {
+            byte[] xml = translate("[" + json + "]");
+            int length = xml.length - prefix.length - suffix.length;
+            if (length < 0
+                    || !Arrays.equals(xml, 0, prefix.length, prefix, 0, prefix.length)
+                    || !Arrays.equals(xml, xml.length - suffix.length, xml.length, suffix, 0, suffix.length)) {
+                throw new IllegalStateException("La traducción de un registro no tiene la forma esperada");
+            }
+            try {
+                out.write(xml, prefix.length, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (out) {
+                out.write(suffix);
+            }
+        }
+
+        private byte[] translate(String json) {
+            Traductor traductor = new Traductor(Lexer.ofContent(json).tokenize().cursor());
+            record.reset();
+            traductor.translate(record);
+            if (!traductor.isValid()) throw new IllegalStateException("Registro inválido: " + traductor.getErrors());
+            return record.toByteArray();
+        }
+    }
+
+    /** Traduce input en una JVM aparte y compara el XML con la referencia. */
+    private static Run translate(String document, String mode, Path input, long inputBytes, Path xml, Path reference,
+                                 Path dir, String xmx, long maxRss, long timeoutSeconds) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + xmx, "-XX:+ExitOnOutOfMemoryError",
+                "-cp", System.getProperty("java.class.path"),
+                "analizadorsintactico.AnalizadorSintactico"));
+        if (!mode.equals("default")) command.add("--" + mode);
+        command.addAll(List.of("--out", xml.toString(), input.toString()));
+
+        // errores.txt queda en dir; la salida de la JVM hija va a un archivo para no bloquearla
+        Path log = dir.resolve("salida.log");
+        Path errors = dir.resolve("errores.txt");
+        Files.deleteIfExists(xml);
+        Files.deleteIfExists(errors);
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        long peakRss = -1;
+        boolean timedOut = false;
+        while (!process.waitFor(20, TimeUnit.MILLISECONDS)) {
+            peakRss = Math.max(peakRss, highWaterMark(process.pid()));
+            if (System.nanoTime() > deadline) {
+                process.destroyForcibly().waitFor();
+                timedOut = true;
+                break;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        // la JVM hija escribe con la codificación de la plataforma
+        String output = Files.readString(log, StandardCharsets.ISO_8859_1);
+        long xmlBytes = Files.exists(xml) ? Files.size(xml) : -1;
+        Run run = new Run(document, mode, inputBytes, nanos, peakRss, xmlBytes, null);
+
+        if (timedOut) return failed(run, "superó el tiempo límite de " + timeoutSeconds + " s");
+        if (process.exitValue() == OUT_OF_MEMORY_EXIT || output.contains("OutOfMemoryError")) {
+            return failed(run, "sin memoria con -Xmx" + xmx);
+        }
+        if (process.exitValue() != 0) {
+            return failed(run, "terminó con código " + process.exitValue() + ": " + firstLine(output));
+        }
+        // solo se escribe errores.txt si el documento no es válido
+        if (Files.exists(errors) || xmlBytes < 0) {
+            return failed(run, "no generó el XML: " + firstLine(output));
+        }
+        if (maxRss > 0 && peakRss > maxRss) {
+            return failed(run, "RSS pico de " + formatMb(peakRss) + " MB, más que el límite de " + formatMb(maxRss) + " MB");
+        }
+        long mismatch = mismatch(xml, reference);
+        if (mismatch >= 0) return failed(run, "el XML difiere de la referencia por registros en el byte " + mismatch);
+        return run;
+    }
+
+    // Pico de memoria residente del proceso según /proc, o -1 si no se puede leer
+    private static long highWaterMark(long pid) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    String kb = line.substring("VmHWM:".length()).trim().split("\\s+")[0];
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // el proceso ya terminó, o no hay /proc
+        }
+        return -1;
+    }
+
+    // Posición del primer byte distinto entre los dos archivos, o -1 si son iguales
+    private static long mismatch(Path a, Path b) throws IOException {
+        try (InputStream in1 = new BufferedInputStream(Files.newInputStream(a), 1 << 20);
+             InputStream in2 = new BufferedInputStream(Files.newInputStream(b), 1 << 20)) {
+            byte[] buf1 = new byte[1 << 16];
+            byte[] buf2 = new byte[1 << 16];
+            long offset = 0;
+            while (true) {
+                int n1 = in1.readNBytes(buf1, 0, buf1.length);
+                int n2 = in2.readNBytes(buf2, 0, buf2.length);
+                int at = Arrays.mismatch(buf1, 0, n1, buf2, 0, n2);
+                if (at >= 0) return offset + at;
+                if (n1 == 0) return -1;
+                offset += n1;
+            }
+        }
+    }
+
+    private static Run failed(Run run, String failure) {
+        return new Run(run.document(), run.mode(), run.inputBytes(), run.nanos(), run.peakRss(), run.xmlBytes(), failure);
+    }
+
+    private static void print(Run run) {
+        double seconds = run.nanos() / 1e9;
+        double mb = run.inputBytes() / (1024.0 * 1024.0);
+        System.out.printf(Locale.ROOT, "%-13s %-9s %10.1f %10.2f %9.1f %11s %10s  %s%n",
+                run.document(), run.mode(), mb, seconds, mb / seconds,
+                run.peakRss() < 0 ? "-" : formatMb(run.peakRss()) + " MB",
+                run.xmlBytes() < 0 ? "-" : formatMb(run.xmlBytes()),
+                run.ok() ? "ok" : "FALLA: " + run.failure());
+    }
+
+    private static void writeReport(Path report, List<Run> runs, String xmx) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            w.write("documento,modo,xmx,bytes_entrada,segundos,rss_pico_bytes,bytes_xml,resultado");
+            w.newLine();
+            for (Run run : runs) {
+                w.write(String.format(Locale.ROOT, "%s,%s,%s,%d,%.3f,%d,%d,\"%s\"",
+                        run.document(), run.mode(), xmx, run.inputBytes(), run.nanos() / 1e9, run.peakRss(), run.xmlBytes(),
+                        run.ok() ? "ok" : run.failure().replace("\"", "\"\"")));
+                w.newLine();
+            }
+        }
+    }
+
+    private static String firstLine(String text) {
+        String trimmed = text.strip();
+        int end = trimmed.indexOf('\n');
+        return end < 0 ? trimmed : trimmed.substring(0, end);
+    }
+
+    private static String formatMb(long bytes) {
+        return String.format(Locale.ROOT, "%.1f", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String formatSize(double mb) {
+        return mb == Math.rint(mb) ? Long.toString((long) mb) : Double.toString(mb);
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Uso: ScalingSuite [--sizes MB,MB,...] [--xmx 256m] "
+                + "[--modes " + String.join(",", MODES) + "] "
+                + "[--only " + String.join(",", Arrays.stream(DocumentGenerator.values())
+                        .filter(DocumentGenerator::isValid).map(Enum::name).toList()) + "] "
+                + "[--max-slowdown factor] [--max-rss MB] [--timeout s] [--dir directorio] [--report archivo.csv] [--keep] "
+                + "[--golden directorio] [--write-golden]");
+    }
+}
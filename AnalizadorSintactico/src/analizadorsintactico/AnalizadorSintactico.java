@@ -1,70 +1,479 @@
 package analizadorsintactico;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 /**
  * Programa principal del Analizador Sintáctico y Traductor JSON→XML.
  *
  * Uso:
- *     java -cp src analizadorsintactico.AnalizadorSintactico ruta/archivo.json
+ *     java -cp src analizadorsintactico.AnalizadorSintactico [--stream | --mmap | --pipeline | --parallel] [--select ruta] [--cache dir [--cache-size MB]] [--out salida.xml[.gz]] [--compact] [--attributes] [--metrics] [--max-errors n | --fail-fast] ruta/archivo.json[.gz]
+ *     java -cp src analizadorsintactico.AnalizadorSintactico --validate ruta/archivo.json[.gz]...
+ *     java -cp src analizadorsintactico.AnalizadorSintactico --watch [--compact] [--max-errors n | --fail-fast] ruta/archivo.json
+ *     java -cp src analizadorsintactico.AnalizadorSintactico --batch [--out dir] [--workers n] [--cache dir [--cache-size MB]] [--compact] [--attributes] [--metrics] [--max-errors n | --fail-fast] dir|glob...
+ *     java -cp src analizadorsintactico.AnalizadorSintactico --ndjson [--out archivo.xml|-] [--workers n] [--metrics] [--max-errors n | --fail-fast] archivo.jsonl|-
+ *     java -cp src analizadorsintactico.AnalizadorSintactico --serve [--port n] [--root dir] [--workers n] [--compact] [--attributes] [--metrics] [--max-errors n | --fail-fast]
+ *
+ * Opciones:
+ *     --stream  usa StreamLexer: los tokens se generan bajo demanda con un
+ *               buffer de tamaño fijo en lugar de cargar el archivo completo.
+ *     --mmap    usa MappedLexer: mapea el archivo en memoria y lo analiza a
+ *               nivel de bytes, decodificando solo los valores necesarios.
+ *     --pipeline usa PipelinedLexer: el lexer corre en otro hilo y le pasa
+ *               los tokens al Traductor en lotes a medida que los genera.
+ *     --parallel si la raíz es un arreglo grande, traduce sus elementos en
+ *               paralelo (ver TraductorParalelo).
+ *     --select  traduce solo lo que indican las rutas (por ejemplo
+ *               personas[*].nombre; ver Projection) y saltea el resto sin
+ *               analizarlo; se puede repetir. Sin otro lexer usa --mmap.
+ *     --cache   guarda cada resultado (el XML o los errores) en el directorio
+ *               indicado, con el hash del contenido de la entrada y las
+ *               opciones como clave; si el mismo contenido vuelve a
+ *               aparecer, se copia sin analizarlo (ver TranslationCache).
+ *               No se combina con --parallel.
+ *     --cache-size tamaño máximo de la caché en MB (por defecto 1024); al
+ *               superarlo se borran las entradas usadas hace más tiempo.
+ *     --compact escribe el XML sin indentación ni saltos de línea (no se
+ *               combina con --parallel ni --ndjson).
+ *     --attributes escribe los escalares de cada objeto como atributos de
+ *               su elemento (<item ci="1" nombre="Ana">) en lugar de como
+ *               elementos hijos; los objetos y arreglos anidados siguen
+ *               siendo elementos. No se combina con --parallel, --ndjson ni
+ *               --watch.
+ *     --validate solo dice si cada archivo es válido y, si no, dónde está el
+ *               primer error, sin generar tokens ni XML (ver Validator);
+ *               termina con código 1 si alguno es inválido.
+ *     --watch   traduce el archivo y lo vuelve a traducir cada vez que cambia,
+ *               rehaciendo solo el objeto o arreglo editado cuando se puede
+ *               (ver TraductorIncremental).
+ *     --batch   traduce todos los .json de los directorios (o los archivos que
+ *               coincidan con los patrones glob) en paralelo; ver TraductorLotes.
+ *     --ndjson  cada línea de la entrada (un archivo, o stdin con '-') es un
+ *               documento; se traducen en paralelo y se escriben en orden a
+ *               medida que están listos (ver TraductorNdjson).
+ *     --serve   deja el programa residente como servidor HTTP en la interfaz
+ *               local: recibe documentos (o rutas dentro de --root) y
+ *               responde el XML o los errores (ver TraductorServidor).
+ *     --port    puerto del servidor (por defecto 8080).
+ *     --root    directorio desde el que el servidor puede leer archivos.
+ *     --out     archivo XML (por defecto salida.xml), directorio de salida
+ *               del modo por lotes, o archivo XML del modo NDJSON ('-' para
+ *               stdout).
+ *     --metrics al terminar imprime en stderr una línea con las métricas de la
+ *               ejecución (ver MetricsRegistry), que además quedan
+ *               publicadas por JMX y como eventos JFR.
+ *     --workers cantidad de traducciones simultáneas (por defecto, un hilo por núcleo);
+ *               también es el paralelismo de --parallel y el límite de
+ *               pedidos en curso del servidor.
+ *     --max-errors cantidad de errores tras la que se abandona el análisis
+ *               de un documento (por defecto 100).
+ *     --fail-fast igual que --max-errors 1: se detiene en el primer error.
+ *
+ * Las entradas comprimidas con gzip o deflate (zlib) se reconocen por sus
+ * primeros bytes y se descomprimen al leerlas; un XML de salida terminado en
+ * .gz, .zz o .deflate se escribe comprimido (ver Compression).
  *
  * Funcionalidad:
  * 1. Toma como entrada un archivo JSON simplificado.
  * 2. Genera tokens a través del Lexer.
- * 3. Realiza análisis sintáctico con Parser.
- * 4. Si el análisis es válido, traduce el contenido a XML mediante Traductor.
- * 5. Escribe los resultados en:
- *      - salida.xml  (traducción)
+ * 3. Realiza el análisis sintáctico y la traducción a XML en una sola pasada
+ *    (Traductor se apoya en los eventos del Parser).
+ * 4. Escribe los resultados en:
+ *      - salida.xml  (traducción, solo si el documento es válido)
  *      - errores.txt (errores encontrados)
  */
 public class AnalizadorSintactico {
+    private static final String USO =
+            "Uso: java -cp src analizadorsintactico.AnalizadorSintactico [--stream | --mmap | --pipeline | --parallel [--workers <n>]] [--select <ruta>] [--cache <dir> [--cache-size <MB>]] [--out <salida.xml[.gz]>] [--compact] [--attributes] [--metrics] [--max-errors <n> | --fail-fast] <ruta-archivo.json[.gz]>\n"
+            + "     java -cp src analizadorsintactico.AnalizadorSintactico --validate <ruta-archivo.json[.gz]>...\n"
+            + "     java -cp src analizadorsintactico.AnalizadorSintactico --watch [--compact] [--max-errors <n> | --fail-fast] <ruta-archivo.json>\n"
+            + "     java -cp src analizadorsintactico.AnalizadorSintactico --batch [--out <dir>] [--workers <n>] [--cache <dir> [--cache-size <MB>]] [--compact] [--attributes] [--metrics] [--max-errors <n> | --fail-fast] <dir|glob>...\n"
+            + "     java -cp src analizadorsintactico.AnalizadorSintactico --ndjson [--out <archivo.xml|->] [--workers <n>] [--metrics] [--max-errors <n> | --fail-fast] <archivo.jsonl|->\n"
+            + "     java -cp src analizadorsintactico.AnalizadorSintactico --serve [--port <n>] [--root <dir>] [--workers <n>] [--compact] [--attributes] [--metrics] [--max-errors <n> | --fail-fast]";
+
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.err.println("Uso: java -cp src analizadorsintactico.AnalizadorSintactico <ruta-archivo.json>");
+        String lexerMode = null;
+        boolean batch = false;
+        boolean parallel = false;
+        boolean ndjson = false;
+        boolean metrics = false;
+        boolean serve = false;
+        boolean watch = false;
+        boolean validate = false;
+        int port = TraductorServidor.DEFAULT_PORT;
+        String root = null;
+        boolean compact = false;
+        boolean attributes = false;
+        String outDir = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int maxErrors = Parser.DEFAULT_MAX_ERRORS;
+        String cacheDir = null;
+        long cacheSize = TranslationCache.DEFAULT_MAX_BYTES;
+        List<String> selects = new ArrayList<>();
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--stream") || arg.equals("--mmap") || arg.equals("--pipeline")) {
+                lexerMode = arg;
+            } else if (arg.equals("--batch")) {
+                batch = true;
+            } else if (arg.equals("--parallel")) {
+                parallel = true;
+            } else if (arg.equals("--ndjson")) {
+                ndjson = true;
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.equals("--validate")) {
+                validate = true;
+            } else if (arg.equals("--serve")) {
+                serve = true;
+            } else if (arg.equals("--root") && i + 1 < args.length) {
+                root = args[++i];
+            } else if (arg.equals("--port") && i + 1 < args.length) {
+                try {
+                    port = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Valor inválido para --port: " + args[i]);
+                    return;
+                }
+            } else if (arg.equals("--max-errors") && i + 1 < args.length) {
+                try {
+                    maxErrors = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    maxErrors = 0;
+                }
+                if (maxErrors < 1) {
+                    System.err.println("Valor inválido para --max-errors: " + args[i]);
+                    return;
+                }
+            } else if (arg.equals("--fail-fast")) {
+                maxErrors = 1;
+            } else if (arg.equals("--select") && i + 1 < args.length) {
+                selects.add(args[++i]);
+            } else if (arg.equals("--cache") && i + 1 < args.length) {
+                cacheDir = args[++i];
+            } else if (arg.equals("--cache-size") && i + 1 < args.length) {
+                try {
+                    cacheSize = Long.parseLong(args[++i]) * 1024 * 1024;
+                } catch (NumberFormatException e) {
+                    cacheSize = -1;
+                }
+                if (cacheSize < 0) {
+                    System.err.println("Valor inválido para --cache-size: " + args[i]);
+                    return;
+                }
+            } else if (arg.equals("--compact")) {
+                compact = true;
+            } else if (arg.equals("--attributes")) {
+                attributes = true;
+            } else if (arg.equals("--metrics")) {
+                metrics = true;
+            } else if (arg.equals("--out") && i + 1 < args.length) {
+                outDir = args[++i];
+            } else if (arg.equals("--workers") && i + 1 < args.length) {
+                try {
+                    workers = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Valor inválido para --workers: " + args[i]);
+                    return;
+                }
+            } else {
+                inputs.add(arg);
+            }
+        }
+        XmlEmitter.Profile profile = XmlEmitter.Profile.of(!compact, attributes);
+        Projection projection = null;
+        if (!selects.isEmpty()) {
+            if (serve || validate || watch || batch || ndjson || parallel) {
+                System.err.println(USO);
+                return;
+            }
+            try {
+                projection = Projection.parse(String.join(",", selects));
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+
+        if (cacheDir != null && (serve || validate || watch || ndjson || parallel)) {
+            System.err.println(USO);
             return;
         }
 
-        String filePath = args[0];
-        String xmlOut = "salida.xml";
-        String errOut = "errores.txt";
+        if (serve) {
+            if (!inputs.isEmpty() || batch || parallel || ndjson || watch || validate) {
+                System.err.println(USO);
+                return;
+            }
+            try {
+                new TraductorServidor(port, root == null ? null : Paths.get(root), workers, profile, metrics, maxErrors).run();
+            } catch (IOException e) {
+                System.err.println("No se pudo iniciar el servidor: " + e.getMessage());
+                System.exit(1);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
 
-        try {
-            // Analizador léxico
-            Lexer lexer = new Lexer(filePath);
-            List<Token> tokens = lexer.tokenizeFile();
+        if (validate) {
+            if (inputs.isEmpty() || batch || parallel || ndjson || watch || lexerMode != null || outDir != null) {
+                System.err.println(USO);
+                return;
+            }
+            if (!validate(inputs)) System.exit(1);
+            return;
+        }
 
-            // Analizador sintáctico
-            Parser parser = new Parser(tokens);
-            parser.parse();
+        if (watch) {
+            if (inputs.size() != 1 || batch || parallel || ndjson || lexerMode != null || metrics || attributes) {
+                System.err.println(USO);
+                return;
+            }
+            try {
+                new TraductorIncremental(inputs.get(0), "salida.xml", "errores.txt", profile, maxErrors).run();
+            } catch (IOException e) {
+                System.err.println("Error al observar el archivo: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
 
-            if (parser.isValid()) {
-                System.out.println("El archivo es sintácticamente válido.");
+        boolean profileUnsupported = profile != XmlEmitter.Profile.INDENTED && (parallel || ndjson);
+        if (inputs.isEmpty() || (!batch && inputs.size() > 1) || profileUnsupported) {
+            System.err.println(USO);
+            return;
+        }
 
-                // Traductor JSON → XML
-                Traductor traductor = new Traductor(tokens);
-                traductor.translateAndWrite(xmlOut, errOut);
+        TranslationCache cache = null;
+        if (cacheDir != null) {
+            try {
+                cache = new TranslationCache(Paths.get(cacheDir), cacheSize);
+            } catch (IOException e) {
+                System.err.println("No se pudo abrir la caché " + cacheDir + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (batch) {
+            boolean ok = false;
+            try {
+                TraductorLotes lotes = new TraductorLotes(inputs, outDir == null ? null : Paths.get(outDir), workers, lexerMode, profile,
+                        metrics, maxErrors, cache);
+                ok = lotes.run();
+            } catch (IOException e) {
+                System.err.println("Error al recorrer las entradas: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+            }
+            if (metrics) printMetrics();
+            if (!ok) System.exit(1);
+            return;
+        }
 
+        String filePath = inputs.get(0);
+
+        String xmlOut = outDir == null ? "salida.xml" : outDir;
+        String errOut = "errores.txt";
+
+        if (ndjson) {
+            boolean ok = false;
+            try {
+                TraductorNdjson traductor = new TraductorNdjson(filePath, xmlOut, errOut, workers, metrics, maxErrors);
+                ok = traductor.run();
+            } catch (IOException e) {
+                System.err.println("Error de E/S en modo NDJSON: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+            }
+            if (metrics) printMetrics();
+            if (!ok) System.exit(1);
+            return;
+        }
+
+        Metrics documentMetrics = metrics ? new Metrics(filePath) : Metrics.NONE;
+        boolean written = true;
+
+        try {
+            // Validación y traducción JSON → XML en una sola pasada
+            boolean valid;
+            boolean aborted;
+            List<String> errors;
+            if (parallel) {
+                TraductorParalelo traductor = new TraductorParalelo(filePath, workers, documentMetrics, maxErrors);
+                written = traductor.translateAndWrite(xmlOut, errOut);
+                valid = traductor.isValid();
+                aborted = traductor.isAborted();
+                errors = traductor.getErrors();
+            } else {
+                TranslationCache.Result result = cache != null
+                        ? translate(cache, filePath, lexerMode, profile, xmlOut, errOut, documentMetrics, maxErrors, projection)
+                        : TranslationCache.Result.of(translate(filePath, lexerMode, profile, xmlOut, errOut, documentMetrics, maxErrors, projection));
+                written = result.written();
+                valid = result.valid();
+                aborted = result.aborted();
+                errors = result.errors();
+            }
+
+            if (!written) {
+                // el motivo ya se imprimió al intentar escribir
+                System.err.println("No se pudo escribir la salida (" + (valid ? xmlOut : errOut) + ").");
+            } else if (valid) {
+                System.out.println("El archivo es sintácticamente válido.");
                 System.out.println("Traducción completada. Archivo XML generado: " + xmlOut);
-                System.out.println("Si hubo errores durante la traducción, se guardaron en: " + errOut);
             } else {
                 System.out.println("Se encontraron errores sintácticos:");
-                for (String e : parser.getErrors()) {
+                for (String e : errors) {
                     System.out.println("- " + e);
                 }
-
-                // Guardar los errores también en archivo
-                try (BufferedWriter w = new BufferedWriter(new FileWriter(errOut))) {
-                    for (String err : parser.getErrors()) {
-                        w.write(err);
-                        w.newLine();
-                    }
-                }
+                if (aborted) System.out.println(abortedMessage(maxErrors));
                 System.out.println("Los errores se guardaron en: " + errOut);
             }
 
         } catch (IOException e) {
             System.err.println("Error al leer el archivo: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.err.println("Error al leer el archivo: " + e.getCause().getMessage());
+        }
+        if (metrics) printMetrics();
+        if (!written) System.exit(1);
+    }
+
+    // Una línea por archivo; false si alguno es inválido o no se pudo leer
+    private static boolean validate(List<String> inputs) {
+        boolean ok = true;
+        for (String input : inputs) {
+            try {
+                Validator.Result result = Validator.validate(Paths.get(input));
+                System.out.println(input + ": " + result);
+                ok &= result.valid();
+            } catch (IOException e) {
+                System.err.println("Error al leer el archivo " + input + ": " + e.getMessage());
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    static String abortedMessage(int maxErrors) {
+        return maxErrors == 1
+                ? "Se detuvo el análisis en el primer error (--fail-fast)."
+                : "Se alcanzó el límite de " + maxErrors + " errores; el análisis se detuvo.";
+    }
+
+    // Va a stderr para no mezclarse con el XML cuando la salida es stdout
+    private static void printMetrics() {
+        System.err.println(MetricsRegistry.get().getSummaryLine());
+    }
+
+    // Traduce un archivo con el lexer indicado (null: Lexer con TokenBuffer)
+    static Traductor translate(String filePath, String lexerMode, String xmlOut, String errOut) throws IOException {
+        return translate(filePath, lexerMode, XmlEmitter.Profile.INDENTED, xmlOut, errOut);
+    }
+
+    static Traductor translate(String filePath, String lexerMode, XmlEmitter.Profile profile,
+                               String xmlOut, String errOut) throws IOException {
+        return translate(filePath, lexerMode, profile, xmlOut, errOut, Metrics.NONE);
+    }
+
+    static Traductor translate(String filePath, String lexerMode, XmlEmitter.Profile profile,
+                               String xmlOut, String errOut, Metrics metrics) throws IOException {
+        return translate(filePath, lexerMode, profile, xmlOut, errOut, metrics, Parser.DEFAULT_MAX_ERRORS);
+    }
+
+    static Traductor translate(String filePath, String lexerMode, XmlEmitter.Profile profile,
+                               String xmlOut, String errOut, Metrics metrics, int maxErrors) throws IOException {
+        return translate(filePath, lexerMode, profile, xmlOut, errOut, metrics, maxErrors, null);
+    }
+
+    // Con un lexer en streaming los tokens se generan durante TRANSLATE: no hay fase LEX aparte,
+    // y si se llega a maxErrors el resto del archivo no se lee. Con una proyección (o null) el
+    // Traductor recibe solo los tokens seleccionados; MappedLexer saltea el resto sobre los bytes
+    static Traductor translate(String filePath, String lexerMode, XmlEmitter.Profile profile,
+                               String xmlOut, String errOut, Metrics metrics, int maxErrors,
+                               Projection projection) throws IOException {
+        Traductor traductor;
+        if (projection != null && lexerMode == null) lexerMode = "--mmap";
+        if (metrics != Metrics.NONE) metrics.bytesRead(Files.size(Paths.get(filePath)));
+        // un archivo comprimido no se puede mapear: se descomprime en streaming
+        if ("--mmap".equals(lexerMode) && Compression.detect(Paths.get(filePath)) != Compression.Format.NONE) {
+            lexerMode = "--stream";
+        }
+        if ("--stream".equals(lexerMode)) {
+            try (StreamLexer lexer = new StreamLexer(filePath)) {
+                traductor = new Traductor(metrics.countTokens(project(lexer, projection)), profile);
+                traductor.setMaxErrors(maxErrors);
+                metrics.begin(Metrics.Phase.TRANSLATE);
+                traductor.translateAndWrite(xmlOut, errOut);
+                metrics.end(Metrics.Phase.TRANSLATE);
+            }
+        } else if ("--mmap".equals(lexerMode)) {
+            try (MappedLexer lexer = new MappedLexer(filePath)) {
+                traductor = new Traductor(metrics.countTokens(project(lexer, projection)), profile);
+                traductor.setMaxErrors(maxErrors);
+                metrics.begin(Metrics.Phase.TRANSLATE);
+                traductor.translateAndWrite(xmlOut, errOut);
+                metrics.end(Metrics.Phase.TRANSLATE);
+            }
+        } else if ("--pipeline".equals(lexerMode)) {
+            // el texto se carga antes (como con Lexer); el análisis léxico corre en paralelo con TRANSLATE
+            try (PipelinedLexer lexer = new PipelinedLexer(filePath)) {
+                traductor = new Traductor(metrics.countTokens(project(lexer, projection)), profile);
+                traductor.setMaxErrors(maxErrors);
+                metrics.begin(Metrics.Phase.TRANSLATE);
+                traductor.translateAndWrite(xmlOut, errOut);
+                metrics.end(Metrics.Phase.TRANSLATE);
+            }
+        } else {
+            metrics.begin(Metrics.Phase.LEX);
+            Lexer lexer = new Lexer(filePath);
+            TokenBuffer tokens = lexer.tokenize();
+            metrics.end(Metrics.Phase.LEX);
+            metrics.countTokens(tokens);
+            traductor = new Traductor(project(tokens.cursor(), projection), profile);
+            traductor.setMaxErrors(maxErrors);
+            metrics.begin(Metrics.Phase.TRANSLATE);
+            traductor.translateAndWrite(xmlOut, errOut);
+            metrics.end(Metrics.Phase.TRANSLATE);
         }
+        metrics.finish(traductor);
+        return traductor;
+    }
+
+    /**
+     * Igual que translate(), pero si la caché ya tiene el resultado para el
+     * contenido del archivo y estas opciones, lo copia a la salida sin
+     * analizar nada. Si no, traduce y lo guarda (un fallo al guardar no
+     * afecta la traducción).
+     */
+    static TranslationCache.Result translate(TranslationCache cache, String filePath, String lexerMode, XmlEmitter.Profile profile,
+                                             String xmlOut, String errOut, Metrics metrics, int maxErrors,
+                                             Projection projection) throws IOException {
+        // todo lo que cambia los bytes generados; el lexer también, porque ante errores no todos informan igual
+        String options = lexerMode + "|" + profile + "|" + maxErrors + "|" + Compression.Format.of(Paths.get(xmlOut)) + "|" + projection;
+        String key = cache.key(Paths.get(filePath), options);
+        TranslationCache.Result cached = cache.restore(key, Paths.get(xmlOut), Paths.get(errOut));
+        if (cached != null) {
+            if (metrics != Metrics.NONE) metrics.bytesRead(Files.size(Paths.get(filePath)));
+            metrics.finish(cached.errors().size(), -1, cached.xmlBytes());
+            return cached;
+        }
+        Traductor traductor = translate(filePath, lexerMode, profile, xmlOut, errOut, metrics, maxErrors, projection);
+        // si no se pudo escribir, en xmlOut puede haber quedado un XML anterior
+        if (traductor.isWritten()) {
+            try {
+                cache.store(key, traductor, Paths.get(xmlOut));
+            } catch (IOException e) {
+                System.err.println("No se pudo guardar " + filePath + " en la caché: " + e.getMessage());
+            }
+        }
+        return TranslationCache.Result.of(traductor);
+    }
+
+    private static TokenCursor project(TokenCursor cursor, Projection projection) {
+        return projection == null ? cursor : projection.filter(cursor);
     }
-}
\ No newline at end of file
+}
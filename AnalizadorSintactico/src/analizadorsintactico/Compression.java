@@ -0,0 +1,376 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Entrada y salida comprimidas (gzip o deflate con cabecera zlib) de forma
+ * transparente.
+ *
+ * El formato de una entrada se reconoce por sus primeros bytes, así que no
+ * importa su nombre; el de una salida, por la extensión (.gz, .zz o
+ * .deflate). La descompresión y la compresión corren cada una en su propio
+ * hilo y le pasan los bloques al otro lado por una cola acotada: mientras el
+ * lexer analiza un bloque ya se está descomprimiendo el siguiente, y mientras
+ * se comprime el XML el Traductor sigue generando el resto. Los bloques
+ * usados vuelven por otra cola para reutilizarse, de modo que la memoria en
+ * vuelo es de unos pocos bloques.
+ *
+ * Un archivo sin comprimir se lee y se escribe directamente, sin hilo extra.
+ */
+final class Compression {
+    static final int CHUNK_SIZE = 64 * 1024;
+    // con dos bloques ya hay superposición; los demás absorben diferencias de ritmo
+    private static final int QUEUE_CAPACITY = 4;
+    private static final String[] EXTENSIONS = {".gz", ".zz", ".deflate"};
+
+    enum Format {
+        NONE(""), GZIP(".gz"), DEFLATE(".zz");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /** Extensión del formato ("" si no comprime). */
+        String extension() {
+            return extension;
+        }
+
+        /** Formato según la extensión del nombre. */
+        static Format of(Path path) {
+            String name = path.getFileName().toString();
+            if (name.endsWith(".gz")) return GZIP;
+            if (name.endsWith(".zz") || name.endsWith(".deflate")) return DEFLATE;
+            return NONE;
+        }
+    }
+
+    private Compression() {
+    }
+
+    /** Nombre sin la extensión de compresión (datos.json.gz → datos.json). */
+    static String stripExtension(String name) {
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) return name.substring(0, name.length() - extension.length());
+        }
+        return name;
+    }
+
+    /**
+     * Formato según los dos primeros bytes: 1F 8B para gzip; para zlib, 78
+     * seguido de 01, 5E, 9C o DA (la ventana de 32 KB que usan todas las
+     * implementaciones, con los bits de control correctos). Un JSON no puede
+     * empezar así: 8B no es UTF-8 válido en esa posición y "x^" no es un valor.
+     */
+    static Format detect(byte[] head, int length) {
+        if (length < 2) return Format.NONE;
+        int b0 = head[0] & 0xFF;
+        int b1 = head[1] & 0xFF;
+        if (b0 == 0x1F && b1 == 0x8B) return Format.GZIP;
+        if (b0 == 0x78 && (b1 == 0x01 || b1 == 0x5E || b1 == 0x9C || b1 == 0xDA)) return Format.DEFLATE;
+        return Format.NONE;
+    }
+
+    static Format detect(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return detect(channel);
+        }
+    }
+
+    private static Format detect(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(2);
+        while (head.hasRemaining() && channel.read(head) >= 0) {
+            // un archivo de menos de dos bytes no está comprimido
+        }
+        channel.position(0);
+        return detect(head.array(), head.position());
+    }
+
+    /** Abre el archivo para lectura, descomprimiéndolo si hace falta. */
+    static InputStream open(Path file) throws IOException {
+        // la cabecera se lee por el canal, que comparte la posición con el stream
+        FileInputStream in = new FileInputStream(file.toFile());
+        try {
+            return decompress(in, detect(in.getChannel()));
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /** Igual que open(Path) para una entrada que no es un archivo (por ejemplo, stdin). */
+    static InputStream open(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        byte[] head = new byte[2];
+        int n = pushback.readNBytes(head, 0, 2);
+        pushback.unread(head, 0, n);
+        return decompress(pushback, detect(head, n));
+    }
+
+    /**
+     * Crea (con options) el archivo de salida, comprimido en el formato
+     * indicado. close() espera a que el hilo de compresión termine de
+     * escribirlo y lanza el error de escritura que haya tenido.
+     */
+    static OutputStream create(Path file, Format format, OpenOption... options) throws IOException {
+        OutputStream raw = Files.newOutputStream(file, options);
+        try {
+            return switch (format) {
+                case NONE -> raw;
+                case GZIP -> new PipedOutput(new GZIPOutputStream(raw, CHUNK_SIZE), "gzip");
+                case DEFLATE -> {
+                    Deflater deflater = new Deflater();
+                    yield new PipedOutput(new DeflaterOutputStream(raw, deflater, CHUNK_SIZE) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                deflater.end();
+                            }
+                        }
+                    }, "deflate");
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    private static InputStream decompress(InputStream raw, Format format) throws IOException {
+        return switch (format) {
+            case NONE -> raw;
+            // buffer de entrada grande: cada read() del inflater produce un bloque casi completo
+            case GZIP -> new PipedInput(new GZIPInputStream(raw, CHUNK_SIZE), "gzip");
+            case DEFLATE -> {
+                Inflater inflater = new Inflater();
+                yield new PipedInput(new InflaterInputStream(raw, inflater, CHUNK_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            inflater.end();
+                        }
+                    }
+                }, "deflate");
+            }
+        };
+    }
+
+    /** Bloque en la cola: length bytes de data, o la falla del hilo (error != null). */
+    private record Chunk(byte[] data, int length, IOException error) { }
+
+    // marca de fin de los datos
+    private static final Chunk END = new Chunk(null, 0, null);
+
+    /**
+     * Entrada que descomprime un hilo aparte, adelantándose hasta
+     * QUEUE_CAPACITY bloques. close() interrumpe al hilo, que cierra la fuente.
+     */
+    private static final class PipedInput extends InputStream {
+        private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+        private final Thread worker;
+        private Chunk current;
+        private int pos;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        PipedInput(InputStream source, String name) {
+            worker = Thread.ofPlatform().name(name + "-descompresion").daemon().start(() -> produce(source));
+        }
+
+        private void produce(InputStream source) {
+            try (source) {
+                while (true) {
+                    byte[] data = free.poll();
+                    if (data == null) data = new byte[CHUNK_SIZE];
+                    int n = source.read(data);
+                    if (n < 0) break;
+                    if (n == 0) {
+                        free.offer(data);
+                    } else {
+                        filled.put(new Chunk(data, n, null));
+                    }
+                }
+                filled.put(END);
+            } catch (IOException e) {
+                try {
+                    filled.put(new Chunk(null, 0, e));
+                } catch (InterruptedException ignored) {
+                    // se cerró la entrada: nadie va a leer el error
+                }
+            } catch (InterruptedException e) {
+                // se cerró la entrada antes de terminar
+            }
+        }
+
+        // Pasa al bloque siguiente; false al final de los datos
+        private boolean next() throws IOException {
+            if (closed) throw new IOException("La entrada está cerrada");
+            if (current != null) free.offer(current.data());
+            current = null;
+            if (finished) return false;
+            Chunk chunk;
+            try {
+                chunk = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lectura interrumpida");
+            }
+            if (chunk == END) {
+                finished = true;
+                return false;
+            }
+            if (chunk.error() != null) {
+                finished = true;
+                throw new IOException(chunk.error().getMessage(), chunk.error());
+            }
+            current = chunk;
+            pos = 0;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if ((current == null || pos == current.length()) && !next()) return -1;
+            return current.data()[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) return 0;
+            if ((current == null || pos == current.length()) && !next()) return -1;
+            int n = Math.min(len, current.length() - pos);
+            System.arraycopy(current.data(), pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        // lo que se puede leer sin esperar al hilo (lo usa, por ejemplo, BufferedReader.ready())
+        @Override
+        public int available() {
+            if (current != null && pos < current.length()) return current.length() - pos;
+            Chunk head = filled.peek();
+            return head == null ? 0 : head.length();
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Salida que comprime un hilo aparte. Los datos se juntan en bloques de
+     * CHUNK_SIZE; flush() entrega el bloque incompleto. Si el hilo falla al
+     * escribir, sigue vaciando la cola (sin escribir) para no bloquear al
+     * productor, y la falla se lanza en la próxima escritura o en close().
+     */
+    private static final class PipedOutput extends OutputStream {
+        private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+        private final Thread worker;
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count = 0;
+        private boolean closed = false;
+        private volatile IOException failure;
+
+        PipedOutput(OutputStream sink, String name) {
+            worker = Thread.ofPlatform().name(name + "-compresion").daemon().start(() -> consume(sink));
+        }
+
+        private void consume(OutputStream sink) {
+            try (sink) {
+                Chunk chunk;
+                while ((chunk = filled.take()) != END) {
+                    if (failure == null) {
+                        try {
+                            sink.write(chunk.data(), 0, chunk.length());
+                        } catch (IOException e) {
+                            failure = e;
+                        }
+                    }
+                    free.offer(chunk.data());
+                }
+            } catch (IOException e) {
+                // al cerrar se escribe el final del formato (por ejemplo, el CRC de gzip)
+                if (failure == null) failure = e;
+            } catch (InterruptedException e) {
+                if (failure == null) failure = new InterruptedIOException("Compresión interrumpida");
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            buffer[count++] = (byte) b;
+            if (count == buffer.length) handOff();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            ensureOpen();
+            while (len > 0) {
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == buffer.length) handOff();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ensureOpen();
+            if (count > 0) handOff();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (count > 0 && failure == null) filled.put(new Chunk(buffer, count, null));
+                filled.put(END);
+                worker.join();
+            } catch (InterruptedException e) {
+                worker.interrupt();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Escritura interrumpida");
+            }
+            if (failure != null) throw failure;
+        }
+
+        private void handOff() throws IOException {
+            try {
+                filled.put(new Chunk(buffer, count, null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Escritura interrumpida");
+            }
+            byte[] next = free.poll();
+            buffer = next == null ? new byte[CHUNK_SIZE] : next;
+            count = 0;
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) throw new IOException("La salida está cerrada");
+            if (failure != null) throw failure;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package analizadorsintactico;
+
+/**
+ * Error encontrado durante el análisis, con su posición en la entrada.
+ *
+ * line y column empiezan en 1 y se cuentan en caracteres; valen 0 si la
+ * fuente de tokens no conoce posiciones (por ejemplo, una List<Token>).
+ * token es el texto del token donde se detectó el error y message la
+ * descripción sin posición. toString() da el texto que se muestra al usuario
+ * y se escribe en los archivos de errores.
+ */
+public record Diagnostic(Kind kind, int line, int column, TokenType tokenType, String token, String message) {
+
+    public enum Kind {
+        /** Carácter, palabra o cadena que el lexer no reconoce. */
+        LEXICAL,
+        /** Token inesperado para la gramática. */
+        SYNTAX
+    }
+
+    /** Error léxico para un token ERROR, con la descripción según su texto. */
+    static Diagnostic lexical(int line, int column, String lexeme) {
+        String message;
+        if (lexeme.length() > 1 && lexeme.startsWith("\"") && lexeme.endsWith("\"")) {
+            message = "secuencia de escape inválida en la cadena " + lexeme;
+        } else if (lexeme.startsWith("\"")) {
+            message = "cadena sin cerrar";
+        } else if (!lexeme.isEmpty() && Character.isLetter(lexeme.charAt(0))) {
+            message = "palabra no reconocida '" + lexeme + "'";
+        } else {
+            message = "carácter inválido '" + lexeme + "'";
+        }
+        return new Diagnostic(Kind.LEXICAL, line, column, TokenType.ERROR, lexeme, message);
+    }
+
+    public boolean hasPosition() {
+        return line > 0;
+    }
+
+    @Override
+    public String toString() {
+        String text = kind == Kind.LEXICAL
+                ? "Error léxico: " + message
+                : "Error en token '" + token + "' (tipo " + tokenType + "): " + message;
+        return hasPosition() ? "Línea " + line + ", columna " + column + ": " + text : text;
+    }
+}
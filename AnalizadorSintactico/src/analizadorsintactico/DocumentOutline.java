@@ -0,0 +1,189 @@
+package analizadorsintactico;
+
+import java.util.Arrays;
+
+/**
+ * Índice de los objetos y arreglos de un documento traducido: para cada
+ * contenedor guarda dónde están sus llaves o corchetes en el texto fuente, qué
+ * rango del XML ocupa su contenido y con qué indentación se escribió.
+ *
+ * Lo completa el Traductor durante la traducción (ver setOutline) y lo usa
+ * TraductorIncremental para ubicar el contenedor más chico que encierra una
+ * edición y reemplazar solo su parte del XML.
+ *
+ * Los contenedores se guardan en preorden en arreglos paralelos, de modo que
+ * los descendientes de un nodo ocupan las posiciones siguientes a él y se
+ * pueden reemplazar como un bloque.
+ */
+public final class DocumentOutline {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size = 0;
+    // posición de la apertura y del cierre: índices de token al traducir, caracteres tras resolve()
+    private int[] open = new int[INITIAL_CAPACITY];
+    private int[] close = new int[INITIAL_CAPACITY];
+    // rango del contenido en el XML, sin las etiquetas del propio contenedor
+    private int[] xmlStart = new int[INITIAL_CAPACITY];
+    private int[] xmlEnd = new int[INITIAL_CAPACITY];
+    private int[] depth = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private boolean[] array = new boolean[INITIAL_CAPACITY];
+
+    // contenedores abiertos mientras se traduce
+    private int[] stack = new int[INITIAL_CAPACITY];
+    private int top = 0;
+
+    public int size() {
+        return size;
+    }
+
+    /** Se abrió un contenedor: token es el índice de su '{' o '['. */
+    void enter(int token, long xmlOffset, int contentDepth, boolean isArray) {
+        if (size == open.length) grow(size * 2);
+        open[size] = token;
+        close[size] = -1;
+        xmlStart[size] = (int) xmlOffset;
+        xmlEnd[size] = -1;
+        depth[size] = contentDepth;
+        parent[size] = top == 0 ? -1 : stack[top - 1];
+        array[size] = isArray;
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top++] = size++;
+    }
+
+    /** Se cerró el contenedor abierto más reciente: token es el índice de su '}' o ']'. */
+    void exit(int token, long xmlOffset) {
+        int node = stack[--top];
+        close[node] = token;
+        xmlEnd[node] = (int) xmlOffset;
+    }
+
+    /** Pasa las posiciones de índices de token a posiciones en el texto fuente. */
+    void resolve(TokenBuffer tokens) {
+        for (int i = 0; i < size; i++) {
+            open[i] = tokens.start(open[i]);
+            close[i] = tokens.start(close[i]);
+        }
+    }
+
+    /**
+     * Contenedor más chico que encierra el rango [from, to) del texto sin
+     * tocar sus propias llaves (su apertura queda antes de from y su cierre
+     * en to o después), o -1 si no hay ninguno.
+     */
+    int enclosing(int from, int to) {
+        // último contenedor que abre antes de from (las aperturas están ordenadas)
+        int lo = 0;
+        int hi = size - 1;
+        int node = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (open[mid] < from) {
+                node = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        while (node >= 0 && close[node] < to) node = parent[node];
+        return node;
+    }
+
+    int open(int node) {
+        return open[node];
+    }
+
+    int close(int node) {
+        return close[node];
+    }
+
+    int xmlStart(int node) {
+        return xmlStart[node];
+    }
+
+    int xmlEnd(int node) {
+        return xmlEnd[node];
+    }
+
+    /** Nivel de indentación del contenido del contenedor. */
+    int depth(int node) {
+        return depth[node];
+    }
+
+    boolean isArray(int node) {
+        return array[node];
+    }
+
+    /**
+     * Reemplaza los descendientes de node por los de sub, el índice de ese
+     * mismo contenedor traducido por separado (su raíz es node, con posiciones
+     * relativas a su apertura y al inicio de su contenido XML). textDelta y
+     * xmlDelta son cuánto cambió el largo del contenedor en el texto y en el XML.
+     */
+    void replace(int node, DocumentOutline sub, int textDelta, int xmlDelta) {
+        int oldEnd = subtreeEnd(node);
+        int added = sub.size - 1;
+        int shift = added - (oldEnd - node - 1);
+        int newSize = size + shift;
+        if (newSize > open.length) grow(Math.max(newSize, open.length * 2));
+
+        // los contenedores que siguen se corren en bloque
+        if (shift != 0) moveTail(oldEnd, oldEnd + shift, size - oldEnd);
+        if (shift != 0 || textDelta != 0 || xmlDelta != 0) {
+            for (int i = oldEnd + shift; i < newSize; i++) {
+                open[i] += textDelta;
+                close[i] += textDelta;
+                xmlStart[i] += xmlDelta;
+                xmlEnd[i] += xmlDelta;
+                if (parent[i] >= oldEnd) parent[i] += shift;
+            }
+        }
+
+        int textBase = open[node];
+        int xmlBase = xmlStart[node];
+        for (int k = 1; k < sub.size; k++) {
+            int i = node + k;
+            open[i] = sub.open[k] + textBase;
+            close[i] = sub.close[k] + textBase;
+            xmlStart[i] = sub.xmlStart[k] + xmlBase;
+            xmlEnd[i] = sub.xmlEnd[k] + xmlBase;
+            depth[i] = sub.depth[k];
+            parent[i] = sub.parent[k] + node;
+            array[i] = sub.array[k];
+        }
+        size = newSize;
+
+        // el propio contenedor y sus ancestros crecen o se achican
+        for (int i = node; i >= 0; i = parent[i]) {
+            close[i] += textDelta;
+            xmlEnd[i] += xmlDelta;
+        }
+    }
+
+    // primer índice después de los descendientes de node
+    private int subtreeEnd(int node) {
+        int end = node + 1;
+        while (end < size && close[end] < close[node]) end++;
+        return end;
+    }
+
+    private void moveTail(int from, int to, int length) {
+        System.arraycopy(open, from, open, to, length);
+        System.arraycopy(close, from, close, to, length);
+        System.arraycopy(xmlStart, from, xmlStart, to, length);
+        System.arraycopy(xmlEnd, from, xmlEnd, to, length);
+        System.arraycopy(depth, from, depth, to, length);
+        System.arraycopy(parent, from, parent, to, length);
+        System.arraycopy(array, from, array, to, length);
+    }
+
+    private void grow(int capacity) {
+        open = Arrays.copyOf(open, capacity);
+        close = Arrays.copyOf(close, capacity);
+        xmlStart = Arrays.copyOf(xmlStart, capacity);
+        xmlEnd = Arrays.copyOf(xmlEnd, capacity);
+        depth = Arrays.copyOf(depth, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        array = Arrays.copyOf(array, capacity);
+    }
+}
@@ -0,0 +1,341 @@
+package analizadorsintactico;
+
+import java.util.Arrays;
+
+/**
+ * Árbol del documento en arreglos primitivos, para recorrerlo más de una vez
+ * o en cualquier orden (medir un subárbol antes de escribirlo, traducirlo
+ * dos veces, generar otro formato) sin volver a analizar el texto.
+ *
+ * Cada nodo es un índice: los nodos se numeran en preorden (el 0 es la raíz)
+ * y de cada uno se guarda su tipo, el padre, el primer hijo y el hermano
+ * siguiente, y los rangos en el texto fuente de su valor y, si es un
+ * atributo, de su nombre. Ni los valores ni los nombres se copian: se leen
+ * del texto al pedirlos. Son 29 bytes por nodo más el texto, contra un
+ * objeto por nodo con sus Strings y un mapa por cada objeto JSON.
+ *
+ * Solo se construye a partir de un documento válido (ver build). No es
+ * seguro entre hilos: value() reutiliza un buffer al decodificar escapes.
+ */
+public final class DocumentTree {
+    public enum Kind {
+        OBJECT, ARRAY, STRING, NUMBER, TRUE, FALSE, NULL;
+
+        private static final Kind[] VALUES = values();
+    }
+
+    /** Índice que indica que no hay nodo (sin padre, sin hijos o sin hermano siguiente). */
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    // bits del tipo que marcan un valor o un nombre con secuencias de escape
+    private static final int ESCAPED_VALUE = 0x40;
+    private static final int ESCAPED_KEY = 0x80;
+    private static final int KIND_MASK = 0x3F;
+
+    private final CharSequence source;
+    private int size = 0;
+    private int maxDepth = 0;
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] firstChildren = new int[INITIAL_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+    // valor: el texto de un escalar (una cadena sin comillas) o de la llave al cierre de un contenedor
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    // nombre del atributo (sin comillas); keyStarts = NONE en la raíz y en los elementos de arreglos
+    private int[] keyStarts = new int[INITIAL_CAPACITY];
+    private int[] keyEnds = new int[INITIAL_CAPACITY];
+    private final StringBuilder scratch = new StringBuilder();
+
+    private DocumentTree(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * Construye el árbol de los tokens. Primero los valida con el Parser
+     * (sin listener, así que no crea Strings) y después los recorre una vez
+     * armando los nodos.
+     *
+     * @throws IllegalArgumentException si el documento no es válido, con el
+     *                                  primer error
+     */
+    public static DocumentTree build(TokenBuffer tokens) {
+        Parser parser = new Parser(tokens.cursor());
+        parser.setMaxErrors(1);
+        parser.parse();
+        if (!parser.isValid()) {
+            throw new IllegalArgumentException("El documento no es válido: " + parser.getErrors().get(0));
+        }
+        DocumentTree tree = new DocumentTree(tokens.source());
+        tree.load(tokens);
+        // los arreglos crecen al doble: se recortan porque el árbol suele quedar en memoria
+        tree.grow(tree.size);
+        tree.maxDepth = parser.getMaxDepth();
+        return tree;
+    }
+
+    // Los tokens ya son válidos: alcanza con seguir qué contenedor está abierto y si viene un nombre
+    private void load(TokenBuffer tokens) {
+        int[] open = new int[INITIAL_CAPACITY];
+        int[] lastChild = new int[INITIAL_CAPACITY];
+        int depth = 0;
+        boolean expectKey = false;
+        int keyToken = NONE;
+        for (int t = 0; t < tokens.size(); t++) {
+            TokenType type = tokens.type(t);
+            switch (type) {
+                case L_LLAVE, L_CORCHETE -> {
+                    int node = add(type == TokenType.L_LLAVE ? Kind.OBJECT : Kind.ARRAY, tokens, t, keyToken,
+                            depth == 0 ? NONE : open[depth - 1], depth == 0 ? NONE : lastChild[depth - 1]);
+                    if (depth > 0) lastChild[depth - 1] = node;
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                        lastChild = Arrays.copyOf(lastChild, depth * 2);
+                    }
+                    open[depth] = node;
+                    lastChild[depth] = NONE;
+                    depth++;
+                    keyToken = NONE;
+                    expectKey = type == TokenType.L_LLAVE;
+                }
+                case R_LLAVE, R_CORCHETE -> ends[open[--depth]] = tokens.end(t);
+                case COMA -> expectKey = kind(open[depth - 1]) == Kind.OBJECT;
+                case DOS_PUNTOS -> expectKey = false;
+                case LITERAL_CADENA, LITERAL_NUM, PR_TRUE, PR_FALSE, PR_NULL -> {
+                    if (expectKey) {
+                        keyToken = t;
+                        continue;
+                    }
+                    int node = add(scalarKind(type), tokens, t, keyToken, open[depth - 1], lastChild[depth - 1]);
+                    lastChild[depth - 1] = node;
+                    keyToken = NONE;
+                }
+                default -> { } // EOF
+            }
+        }
+    }
+
+    private static Kind scalarKind(TokenType type) {
+        return switch (type) {
+            case LITERAL_CADENA -> Kind.STRING;
+            case LITERAL_NUM -> Kind.NUMBER;
+            case PR_TRUE -> Kind.TRUE;
+            case PR_FALSE -> Kind.FALSE;
+            default -> Kind.NULL;
+        };
+    }
+
+    private static TokenType tokenType(Kind kind) {
+        return switch (kind) {
+            case STRING -> TokenType.LITERAL_CADENA;
+            case NUMBER -> TokenType.LITERAL_NUM;
+            case TRUE -> TokenType.PR_TRUE;
+            case FALSE -> TokenType.PR_FALSE;
+            case NULL -> TokenType.PR_NULL;
+            default -> throw new IllegalArgumentException("No es un escalar: " + kind);
+        };
+    }
+
+    private int add(Kind kind, TokenBuffer tokens, int token, int keyToken, int parent, int previous) {
+        if (size == kinds.length) grow(size * 2);
+        int node = size++;
+        int flags = kind.ordinal();
+        if (tokens.isEscaped(token)) flags |= ESCAPED_VALUE;
+        if (keyToken != NONE && tokens.isEscaped(keyToken)) flags |= ESCAPED_KEY;
+        kinds[node] = (byte) flags;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        starts[node] = tokens.start(token);
+        ends[node] = tokens.end(token);
+        keyStarts[node] = keyToken == NONE ? NONE : tokens.start(keyToken);
+        keyEnds[node] = keyToken == NONE ? NONE : tokens.end(keyToken);
+        if (previous != NONE) {
+            nextSiblings[previous] = node;
+        } else if (parent != NONE) {
+            firstChildren[parent] = node;
+        }
+        return node;
+    }
+
+    private void grow(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        keyStarts = Arrays.copyOf(keyStarts, capacity);
+        keyEnds = Arrays.copyOf(keyEnds, capacity);
+    }
+
+    /** Cantidad de nodos. */
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    /** Máxima cantidad de objetos y arreglos anidados. */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    public Kind kind(int node) {
+        return Kind.VALUES[kinds[node] & KIND_MASK];
+    }
+
+    public boolean isContainer(int node) {
+        Kind kind = kind(node);
+        return kind == Kind.OBJECT || kind == Kind.ARRAY;
+    }
+
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) count++;
+        return count;
+    }
+
+    /** Hijo número index (desde 0) del contenedor, o NONE si tiene menos hijos. */
+    public int child(int node, int index) {
+        int child = firstChildren[node];
+        for (int i = 0; i < index && child != NONE; i++) child = nextSiblings[child];
+        return child;
+    }
+
+    /** Primer atributo del objeto con ese nombre, o NONE. */
+    public int member(int node, String name) {
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if ((kinds[child] & ESCAPED_KEY) != 0 ? name.equals(key(child)) : regionEquals(keyStarts[child], keyEnds[child], name)) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean regionEquals(int start, int end, String name) {
+        if (end - start != name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (source.charAt(start + i) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Primer nodo después del subárbol de node (los descendientes son los
+     * nodos de node + 1 a subtreeEnd(node) - 1, por el preorden).
+     */
+    public int subtreeEnd(int node) {
+        for (int n = node; n != NONE; n = parents[n]) {
+            if (nextSiblings[n] != NONE) return nextSiblings[n];
+        }
+        return size;
+    }
+
+    /** true si el nodo es un atributo de un objeto (tiene nombre). */
+    public boolean hasKey(int node) {
+        return keyStarts[node] != NONE;
+    }
+
+    /** Nombre del atributo, o null si el nodo es la raíz o un elemento de un arreglo. */
+    public String key(int node) {
+        if (keyStarts[node] == NONE) return null;
+        return text(keyStarts[node], keyEnds[node], (kinds[node] & ESCAPED_KEY) != 0);
+    }
+
+    /** Símbolo del nombre (ver SymbolTable), buscado sin crear el String si no tiene escapes. */
+    public Symbol keySymbol(int node) {
+        if (keyStarts[node] == NONE) return null;
+        if ((kinds[node] & ESCAPED_KEY) != 0) return SymbolTable.SHARED.get(key(node));
+        return SymbolTable.SHARED.get(source, keyStarts[node], keyEnds[node]);
+    }
+
+    /**
+     * Valor de un escalar tal como lo ve el Traductor: una cadena sin comillas
+     * y con los escapes decodificados, o el texto del número o la palabra.
+     * Para un contenedor es su texto completo, de la llave de apertura a la
+     * de cierre.
+     */
+    public String value(int node) {
+        return text(starts[node], ends[node], (kinds[node] & ESCAPED_VALUE) != 0);
+    }
+
+    /** Inicio del valor en el texto fuente (sin la comilla en una cadena). */
+    public int start(int node) {
+        return starts[node];
+    }
+
+    /** Fin (exclusivo) del valor en el texto fuente. */
+    public int end(int node) {
+        return ends[node];
+    }
+
+    private String text(int start, int end, boolean escaped) {
+        return escaped
+                ? StringEscapes.unescape(source, start, end, scratch)
+                : source.subSequence(start, end).toString();
+    }
+
+    /** Emite los eventos que emitiría el Parser al analizar el documento. */
+    public void replay(ParseListener listener) {
+        replay(root(), listener);
+    }
+
+    /**
+     * Emite los eventos del subárbol de node, como si fuera la raíz de un
+     * documento (un objeto o un arreglo). Recorre el árbol sin recursión.
+     */
+    public void replay(int node, ParseListener listener) {
+        if (!isContainer(node)) throw new IllegalArgumentException("El nodo " + node + " no es un objeto ni un arreglo");
+        int n = node;
+        while (true) {
+            boolean item = n != node && kind(parents[n]) == Kind.ARRAY;
+            Symbol key = n == node ? null : keySymbol(n);
+            if (item) listener.startItem();
+            switch (kind(n)) {
+                case OBJECT -> listener.startObject(key);
+                case ARRAY -> listener.startArray(key);
+                default -> listener.scalar(key, tokenType(kind(n)), value(n));
+            }
+            if (firstChildren[n] != NONE) {
+                n = firstChildren[n];
+                continue;
+            }
+            // n no tiene hijos: se cierran n y los contenedores que terminan con él
+            while (true) {
+                finish(n, node, listener);
+                if (n == node) return;
+                if (nextSiblings[n] != NONE) {
+                    n = nextSiblings[n];
+                    break;
+                }
+                n = parents[n];
+            }
+        }
+    }
+
+    private void finish(int n, int node, ParseListener listener) {
+        Symbol key = n == node ? null : keySymbol(n);
+        switch (kind(n)) {
+            case OBJECT -> listener.endObject(key);
+            case ARRAY -> listener.endArray(key);
+            default -> { }
+        }
+        if (n != node && kind(parents[n]) == Kind.ARRAY) listener.endItem();
+    }
+}
@@ -1,92 +1,199 @@
 package analizadorsintactico;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class Lexer {
+    // caracteres que se buscan por vez dentro de una cadena (entran en la caché L1)
+    private static final int SCAN_BLOCK = 2048;
+    private static final int SHORT_STRING = 16;
+
     private final String contenido;
-    private int lineNumber;
+    // número de la primera línea del contenido (para las posiciones de los errores)
+    private final int firstLine;
+    // resultado de extractString para la última cadena
+    private boolean stringEscaped;
+    private boolean stringInvalid;
+    private boolean stringUnterminated;
 
     public Lexer(String filePath) throws IOException {
         StringBuilder sb = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new FileReader(filePath));
+        // un archivo comprimido se descomprime en otro hilo mientras se lee (ver Compression)
+        BufferedReader reader = new BufferedReader(new InputStreamReader(Compression.open(Paths.get(filePath)), StandardCharsets.UTF_8));
         String line;
         while ((line = reader.readLine()) != null) {
             sb.append(line).append("\n"); // conservamos saltos de línea
         }
         reader.close();
         this.contenido = sb.toString();
-        this.lineNumber = 1;
+        this.firstLine = 1;
+    }
+
+    private Lexer(String contenido, int firstLine) {
+        this.contenido = contenido;
+        this.firstLine = firstLine;
+    }
+
+    /** Lexer sobre un texto ya cargado en memoria (en lugar de un archivo). */
+    public static Lexer ofContent(String contenido) {
+        return ofContent(contenido, 1);
+    }
+
+    /** Igual que ofContent(String), numerando las líneas desde firstLine en los errores. */
+    public static Lexer ofContent(String contenido, int firstLine) {
+        return new Lexer(contenido, firstLine);
+    }
+
+    /**
+     * Deja el texto como lo carga el constructor desde un archivo: saltos de
+     * línea \r\n o \r convertidos a \n y cada línea terminada en \n.
+     */
+    static String normalizeLines(String text) {
+        if (text.indexOf('\r') < 0) {
+            return text.isEmpty() || text.endsWith("\n") ? text : text + "\n";
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 1);
+        int lineStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                sb.append(text, lineStart, i).append('\n');
+                if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') i++;
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < text.length()) sb.append(text, lineStart, text.length()).append('\n');
+        return sb.toString();
     }
 
     public void processFile() {
-        List<Token> tokens = processLine(contenido);
+        TokenBuffer buffer = processLine(contenido);
+        List<Token> tokens = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            if (buffer.type(i) == TokenType.ERROR) {
+                System.err.println(Diagnostic.lexical(buffer.line(i), buffer.column(i), buffer.value(i)));
+            } else {
+                tokens.add(new Token(buffer.type(i), buffer.value(i)));
+            }
+        }
         printTokens(tokens, 0);
     }
 
-    private List<Token> processLine(String text) {
-        List<Token> tokens = new ArrayList<>();
-        int i = 0;
+    // Los tokens se guardan como rangos sobre el texto: no se crea un String por token.
+    // Lo que no se reconoce queda como un token ERROR y el análisis sigue.
+    private TokenBuffer processLine(String text) {
+        TokenBuffer tokens = new TokenBuffer(text, firstLine);
+        processLine(text, 0, tokens, Integer.MAX_VALUE);
+        return tokens;
+    }
+
+    // Agrega tokens desde from hasta llegar a limit o al final del texto; devuelve dónde siguió
+    private int processLine(String text, int from, TokenBuffer tokens, int limit) {
+        int i = from;
 
-        while (i < text.length()) {
+        while (i < text.length() && tokens.size() < limit) {
             char currentChar = text.charAt(i);
 
             if (Character.isWhitespace(currentChar)) {
-                if (currentChar == '\n') lineNumber++;
                 i++;
                 continue;
             }
 
             if (currentChar == '"') {
-                String str = extractString(text, i);
-                tokens.add(new Token(TokenType.LITERAL_CADENA, str));
-                i += str.length() + 2;
-            } else if (Character.isDigit(currentChar) || (currentChar == '-' && i + 1 < text.length() && Character.isDigit(text.charAt(i+1)))) {
-                String num = extractNumber(text, i);
-                tokens.add(new Token(TokenType.LITERAL_NUM, num));
-                i += num.length();
-            } else if (Character.isLetter(currentChar)) {
-                String word = extractWord(text, i);
-                TokenType type = getKeywordType(word);
-                if (type != TokenType.ERROR) {
-                    tokens.add(new Token(type, word));
-                    i += word.length();
-                } else {
-                    System.err.println("Error léxico en línea " + lineNumber + ": palabra no reconocida '" + word + "'");
-                    break;
+                int end = extractString(text, i);
+                if (stringUnterminated) {
+                    // la cadena sin cerrar llega hasta el final: el token es solo la comilla
+                    tokens.add(TokenType.ERROR, i, i + 1);
+                    i = text.length();
+                    continue;
                 }
-            } else {
-                TokenType type = getTokenType(currentChar);
-                if (type != TokenType.ERROR) {
-                    tokens.add(new Token(type, String.valueOf(currentChar)));
-                    i++;
+                if (stringInvalid) {
+                    // escape inválido: toda la cadena, con sus comillas, es un token ERROR
+                    tokens.add(TokenType.ERROR, i, end + 1);
                 } else {
-                    System.err.println("Error léxico en línea " + lineNumber + ": carácter inválido '" + currentChar + "'");
-                    break;
+                    tokens.add(TokenType.LITERAL_CADENA, i + 1, end, stringEscaped);
                 }
+                i = end + 1;
+            } else if (Character.isDigit(currentChar) || (currentChar == '-' && i + 1 < text.length() && Character.isDigit(text.charAt(i+1)))) {
+                int end = extractNumber(text, i);
+                tokens.add(TokenType.LITERAL_NUM, i, end);
+                i = end;
+            } else if (Character.isLetter(currentChar)) {
+                int end = extractWord(text, i);
+                TokenType type = getKeywordType(text, i, end);
+                tokens.add(type, i, end);
+                i = end;
+            } else {
+                tokens.add(getTokenType(currentChar), i, i + 1);
+                i++;
             }
         }
 
-        return tokens;
+        return i;
     }
 
-    private String extractString(String text, int startIndex) {
-        int endIndex = text.indexOf('"', startIndex + 1);
-        if (endIndex == -1) return "";
-        return text.substring(startIndex + 1, endIndex);
+    // Devuelven el índice donde termina el valor del token (exclusivo)
+
+    // Busca la comilla de cierre saltando las secuencias de escape. El texto se recorre por
+    // bloques chicos: en cada uno se busca la comilla y después la barra solo hasta ella,
+    // las dos con indexOf (en bloque) y con el bloque ya en caché. Una cadena sin escapes
+    // no se copia: queda como un rango del texto.
+    private int extractString(String text, int startIndex) {
+        stringEscaped = false;
+        stringInvalid = false;
+        stringUnterminated = false;
+        int length = text.length();
+        int from = startIndex + 1;
+        // las cadenas cortas (la mayoría de las claves) se resuelven sin llamar a indexOf
+        int shortEnd = Math.min(from + SHORT_STRING, length);
+        while (from < shortEnd) {
+            char c = text.charAt(from);
+            if (c == '"') return from;
+            if (c == '\\') break;
+            from++;
+        }
+        while (from < length) {
+            int blockEnd = Math.min(from + SCAN_BLOCK, length);
+            int quote = text.indexOf('"', from, blockEnd);
+            int backslash = text.indexOf('\\', from, quote == -1 ? blockEnd : quote);
+            if (backslash == -1) {
+                if (quote != -1) return quote;
+                from = blockEnd;
+                continue;
+            }
+            stringEscaped = true;
+            int escape = StringEscapes.escapeLength(text, backslash, length);
+            if (escape == 0) {
+                // se saltea la barra y el carácter siguiente, que no es una comilla
+                stringInvalid = true;
+                escape = 2;
+            }
+            from = backslash + escape;
+        }
+        stringUnterminated = true;
+        return length;
     }
 
-    private String extractNumber(String text, int startIndex) {
+    private int extractNumber(String text, int startIndex) {
         int i = startIndex;
         if (text.charAt(i) == '-') i++; // soporte negativo
         while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) i++;
-        return text.substring(startIndex, i);
+        return i;
     }
 
-    private String extractWord(String text, int startIndex) {
+    private int extractWord(String text, int startIndex) {
         int i = startIndex;
         while (i < text.length() && Character.isLetter(text.charAt(i))) i++;
-        return text.substring(startIndex, i);
+        return i;
+    }
+
+    private TokenType getKeywordType(String text, int start, int end) {
+        // solo "true", "null" y "false" pueden ser palabras reservadas
+        int length = end - start;
+        if (length != 4 && length != 5) return TokenType.ERROR;
+        return getKeywordType(text.substring(start, end));
     }
 
     private TokenType getKeywordType(String word) {
@@ -200,8 +307,31 @@ public class Lexer {
 
     // tokenizeFile() usa el contenido ya cargado en el constructor
     public List<Token> tokenizeFile() {
-        List<Token> allTokens = processLine(contenido);
-        allTokens.add(new Token(TokenType.EOF, "EOF"));
-        return allTokens;
+        return tokenize().toList();
+    }
+
+    /** Igual que tokenizeFile() pero en formato compacto, terminado en EOF. */
+    public TokenBuffer tokenize() {
+        TokenBuffer tokens = processLine(contenido);
+        tokens.add(TokenType.EOF, contenido.length(), contenido.length());
+        return tokens;
+    }
+
+    /** TokenBuffer vacío sobre el contenido, para tokenize(TokenBuffer, int). */
+    TokenBuffer newBuffer() {
+        return new TokenBuffer(contenido, firstLine);
+    }
+
+    /**
+     * Tokeniza por partes: agrega a tokens (creado con newBuffer()) los
+     * tokens que siguen a la posición from hasta que tenga limit tokens. Al
+     * llegar al final del contenido agrega EOF (aunque se pase de limit) y
+     * devuelve -1; si no, la posición desde la que hay que seguir.
+     */
+    int tokenize(TokenBuffer tokens, int from, int limit) {
+        int next = processLine(contenido, from, tokens, limit);
+        if (next < contenido.length()) return next;
+        tokens.add(TokenType.EOF, contenido.length(), contenido.length());
+        return -1;
     }
 }
\ No newline at end of file
@@ -0,0 +1,476 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Analizador léxico sobre el archivo mapeado en memoria (FileChannel.map).
+ *
+ * Recorre directamente los bytes UTF-8 de la entrada sin decodificarla a char:
+ * la estructura de JSON es ASCII, así que cada byte se clasifica con una tabla
+ * precalculada. Solo se decodifica el valor de un token (por ejemplo el
+ * contenido de una cadena) cuando alguien lo pide con value(); la puntuación
+ * nunca se materializa. Las secuencias de escape se validan al recorrer la
+ * cadena y solo se decodifican, también al pedir el valor, si las hay. Los bytes no ASCII fuera de cadenas se decodifican
+ * para clasificarlos igual que Lexer (Character.isLetter, isDigit, ...).
+ *
+ * Como Lexer, lo que no reconoce lo entrega como un token ERROR y sigue; una
+ * cadena sin cerrar es un token ERROR con la comilla que llega hasta el final
+ * de la entrada. La columna de un token se cuenta en caracteres solo cuando
+ * se pide.
+ *
+ * El archivo se mapea por ventanas, por lo que admite entradas de más de 2 GB.
+ */
+public class MappedLexer implements TokenCursor, Closeable {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+    // clases de byte
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte DIGIT = 2;
+    private static final byte LETTER = 3;
+    private static final byte QUOTE = 4;
+    private static final byte MINUS = 5;
+    private static final byte PUNCT = 6;
+    private static final byte NON_ASCII = 7;
+
+    private static final byte[] CLASS = new byte[256];
+    private static final TokenType[] PUNCT_TYPE = new TokenType[128];
+
+    static {
+        for (int b = 0; b < 128; b++) {
+            if (Character.isWhitespace(b)) CLASS[b] = SPACE;
+            else if (b >= '0' && b <= '9') CLASS[b] = DIGIT;
+            else if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')) CLASS[b] = LETTER;
+        }
+        for (int b = 128; b < 256; b++) CLASS[b] = NON_ASCII;
+        CLASS['"'] = QUOTE;
+        CLASS['-'] = MINUS;
+        PUNCT_TYPE['{'] = TokenType.L_LLAVE;
+        PUNCT_TYPE['}'] = TokenType.R_LLAVE;
+        PUNCT_TYPE['['] = TokenType.L_CORCHETE;
+        PUNCT_TYPE[']'] = TokenType.R_CORCHETE;
+        PUNCT_TYPE[':'] = TokenType.DOS_PUNTOS;
+        PUNCT_TYPE[','] = TokenType.COMA;
+        for (int b = 0; b < 128; b++) {
+            if (PUNCT_TYPE[b] != null) CLASS[b] = PUNCT;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private int windowLength = 0;
+
+    private long pos = 0;
+    private int lineNumber = 1;
+    private long lineStart = 0;
+
+    // token actual: tipo y rango [tokenStart, tokenEnd) de su valor en el archivo
+    private TokenType type;
+    private long tokenStart;
+    private long tokenEnd;
+    private String value;
+    // la cadena actual tiene secuencias de escape
+    private boolean escaped;
+    private final StringBuilder unescaped = new StringBuilder();
+    // dónde empieza el token actual (incluida la comilla de una cadena) y su línea
+    private long tokenOffset;
+    private int tokenLine;
+    private long tokenLineStart;
+    private byte[] scratch = new byte[64];
+
+    public MappedLexer(String filePath) throws IOException {
+        this(Paths.get(filePath), DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedLexer(Path path, int windowSize) throws IOException {
+        if (windowSize < 8) throw new IllegalArgumentException("windowSize debe ser >= 8");
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    // TokenCursor
+
+    @Override
+    public TokenType type() {
+        if (type == null) scan();
+        return type;
+    }
+
+    @Override
+    public String value() {
+        if (type == null) scan();
+        if (value == null) value = materialize();
+        return value;
+    }
+
+    @Override
+    public void advance() {
+        if (type() != TokenType.EOF) scan();
+    }
+
+    @Override
+    public int line() {
+        if (type == null) scan();
+        return tokenLine;
+    }
+
+    @Override
+    public int column() {
+        if (type == null) scan();
+        // caracteres UTF-16 desde el inicio de la línea: una secuencia de 4 bytes son dos
+        int column = 1;
+        for (long p = tokenLineStart; p < tokenOffset; p++) {
+            int b = byteAt(p);
+            if ((b & 0xC0) != 0x80) column++;
+            if (b >= 0xF0) column++;
+        }
+        return column;
+    }
+
+    /** Equivalente a StreamLexer.nextToken(): avanza y devuelve el token como objeto. */
+    public Token nextToken() {
+        if (type != TokenType.EOF) scan();
+        return new Token(type, value());
+    }
+
+    /**
+     * Saltea el valor que empieza en el token actual (un objeto o arreglo
+     * completo, o un escalar) y deja el cursor en el token siguiente. Un
+     * objeto o arreglo se recorre sobre los bytes contando llaves y
+     * corchetes, sin crear tokens; las cadenas se recorren solo para no
+     * contar los que tienen adentro. Lo salteado no se valida.
+     */
+    void skipValue() {
+        TokenType t = type();
+        if (t != TokenType.L_LLAVE && t != TokenType.L_CORCHETE) {
+            advance();
+            return;
+        }
+        int depth = 1;
+        boolean inString = false;
+        boolean escape = false;
+        long p = pos;
+        while (depth > 0 && p < size) {
+            ensureMapped(p, p + 1);
+            MappedByteBuffer w = window;
+            long base = windowStart;
+            int rel = (int) (p - base);
+            int limit = windowLength;
+            while (rel < limit) {
+                byte b = w.get(rel++);
+                if (b == '\n') {
+                    newLine(base + rel - 1);
+                    escape = false;
+                } else if (escape) {
+                    escape = false;
+                } else if (inString) {
+                    if (b == '"') inString = false;
+                    else if (b == '\\') escape = true;
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    break;
+                }
+            }
+            p = base + rel;
+        }
+        pos = p;
+        scan();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private void scan() {
+        value = null;
+        while (pos < size) {
+            int b = byteAt(pos);
+            tokenOffset = pos;
+            tokenLine = lineNumber;
+            tokenLineStart = lineStart;
+            switch (CLASS[b]) {
+                case SPACE -> {
+                    if (b == '\n') newLine(pos);
+                    pos++;
+                }
+                case QUOTE -> {
+                    scanString();
+                    return;
+                }
+                case DIGIT -> {
+                    scanNumber();
+                    return;
+                }
+                case MINUS -> {
+                    if (pos + 1 < size && isDigitAt(pos + 1)) {
+                        scanNumber();
+                    } else {
+                        errorToken(pos, pos + 1);
+                    }
+                    return;
+                }
+                case LETTER -> {
+                    scanWord();
+                    return;
+                }
+                case PUNCT -> {
+                    setToken(PUNCT_TYPE[b], pos, pos + 1);
+                    pos++;
+                    return;
+                }
+                case NON_ASCII -> {
+                    int cp = codePointAt(pos);
+                    if (Character.isWhitespace(cp)) {
+                        pos += utf8Length(b);
+                    } else if (Character.isDigit(cp)) {
+                        scanNumber();
+                        return;
+                    } else if (Character.isLetter(cp)) {
+                        scanWord();
+                        return;
+                    } else {
+                        errorToken(pos, Math.min(pos + utf8Length(b), size));
+                        return;
+                    }
+                }
+                default -> {
+                    errorToken(pos, pos + 1);
+                    return;
+                }
+            }
+        }
+        tokenOffset = pos;
+        tokenLine = lineNumber;
+        tokenLineStart = lineStart;
+        finish();
+    }
+
+    private void scanString() {
+        long start = pos + 1;
+        long i = start;
+        boolean hasEscapes = false;
+        boolean invalid = false;
+        // '"', '\\' y '\n' nunca aparecen dentro de una secuencia UTF-8 multibyte
+        int b;
+        while (i < size && (b = byteAt(i)) != '"') {
+            if (b == '\\') {
+                hasEscapes = true;
+                int length = escapeLengthAt(i);
+                if (length == 0) {
+                    // se saltea la barra y el byte siguiente, que no es una comilla
+                    invalid = true;
+                    length = (int) Math.min(2, size - i);
+                    if (length == 2 && byteAt(i + 1) == '\n') newLine(i + 1);
+                }
+                i += length;
+                continue;
+            }
+            if (b == '\n') newLine(i);
+            i++;
+        }
+        if (i >= size) {
+            // la cadena sin cerrar llega hasta el final: el token es solo la comilla
+            errorToken(pos, pos + 1);
+            pos = size;
+            return;
+        }
+        if (invalid) {
+            // escape inválido: toda la cadena, con sus comillas, es un token ERROR
+            errorToken(pos, i + 1);
+            return;
+        }
+        setToken(TokenType.LITERAL_CADENA, start, i);
+        escaped = hasEscapes;
+        pos = i + 1;
+    }
+
+    // mismo criterio que StringEscapes.escapeLength, sobre los bytes
+    private int escapeLengthAt(long at) {
+        if (at + 1 >= size) return 0;
+        int c = byteAt(at + 1);
+        if (StringEscapes.isSimpleEscape(c)) return 2;
+        if (c != 'u' || at + StringEscapes.MAX_ESCAPE_LENGTH > size) return 0;
+        for (long k = at + 2; k < at + StringEscapes.MAX_ESCAPE_LENGTH; k++) {
+            if (StringEscapes.hexValue(byteAt(k)) < 0) return 0;
+        }
+        return StringEscapes.MAX_ESCAPE_LENGTH;
+    }
+
+    private void scanNumber() {
+        long start = pos;
+        long i = pos;
+        if (byteAt(i) == '-') i++;
+        while (i < size) {
+            int b = byteAt(i);
+            if (CLASS[b] == DIGIT || b == '.') {
+                i++;
+            } else if (CLASS[b] == NON_ASCII && Character.isDigit(codePointAt(i))) {
+                i += utf8Length(b);
+            } else {
+                break;
+            }
+        }
+        setToken(TokenType.LITERAL_NUM, start, i);
+        pos = i;
+    }
+
+    private void scanWord() {
+        long start = pos;
+        long i = pos;
+        boolean ascii = true;
+        while (i < size) {
+            int b = byteAt(i);
+            if (CLASS[b] == LETTER) {
+                i++;
+            } else if (CLASS[b] == NON_ASCII && Character.isLetter(codePointAt(i))) {
+                ascii = false;
+                i += utf8Length(b);
+            } else {
+                break;
+            }
+        }
+        TokenType keyword = ascii ? asciiKeywordType(start, i) : keywordType(decode(start, i));
+        setToken(keyword, start, i);
+        pos = i;
+    }
+
+    // true, false y null sin distinguir mayúsculas, comparando los bytes sin decodificar
+    private TokenType asciiKeywordType(long start, long end) {
+        long len = end - start;
+        if (len == 4 && matchesIgnoreCase(start, "true")) return TokenType.PR_TRUE;
+        if (len == 5 && matchesIgnoreCase(start, "false")) return TokenType.PR_FALSE;
+        if (len == 4 && matchesIgnoreCase(start, "null")) return TokenType.PR_NULL;
+        return TokenType.ERROR;
+    }
+
+    // mismo criterio que Lexer.getKeywordType para palabras con letras no ASCII
+    private TokenType keywordType(String word) {
+        return switch (word.toLowerCase()) {
+            case "true" -> TokenType.PR_TRUE;
+            case "false" -> TokenType.PR_FALSE;
+            case "null" -> TokenType.PR_NULL;
+            default -> TokenType.ERROR;
+        };
+    }
+
+    // la palabra solo contiene letras ASCII: basta con forzar el bit de minúscula
+    private boolean matchesIgnoreCase(long start, String word) {
+        for (int k = 0; k < word.length(); k++) {
+            if ((byteAt(start + k) | 0x20) != word.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private void setToken(TokenType t, long start, long end) {
+        type = t;
+        escaped = false;
+        tokenStart = start;
+        tokenEnd = end;
+    }
+
+    private void errorToken(long start, long end) {
+        setToken(TokenType.ERROR, start, end);
+        pos = end;
+    }
+
+    private void newLine(long at) {
+        lineNumber++;
+        lineStart = at + 1;
+    }
+
+    private void finish() {
+        pos = size;
+        type = TokenType.EOF;
+        value = "EOF";
+    }
+
+    private String materialize() {
+        return switch (type) {
+            case L_LLAVE -> "{";
+            case R_LLAVE -> "}";
+            case L_CORCHETE -> "[";
+            case R_CORCHETE -> "]";
+            case DOS_PUNTOS -> ":";
+            case COMA -> ",";
+            default -> {
+                String raw = decode(tokenStart, tokenEnd);
+                yield escaped ? StringEscapes.unescape(raw, 0, raw.length(), unescaped) : raw;
+            }
+        };
+    }
+
+    private String decode(long start, long end) {
+        int len = (int) (end - start);
+        ensureMapped(start, end);
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        window.get((int) (start - windowStart), scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private boolean isDigitAt(long p) {
+        int b = byteAt(p);
+        return CLASS[b] == DIGIT || (CLASS[b] == NON_ASCII && Character.isDigit(codePointAt(p)));
+    }
+
+    private static int utf8Length(int lead) {
+        if (lead >= 0xF0) return 4;
+        if (lead >= 0xE0) return 3;
+        if (lead >= 0xC0) return 2;
+        return 1;
+    }
+
+    // Decodifica el code point que empieza en p; secuencias inválidas → U+FFFD
+    private int codePointAt(long p) {
+        int lead = byteAt(p);
+        int n = utf8Length(lead);
+        if (n == 1 || p + n > size) return 0xFFFD;
+        int cp = lead & (0x3F >> (n - 1));
+        for (int k = 1; k < n; k++) {
+            int b = byteAt(p + k);
+            if ((b & 0xC0) != 0x80) return 0xFFFD;
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        // Lexer trabaja con char: un code point suplementario es un surrogate suelto
+        return cp > 0xFFFF ? 0xFFFD : cp;
+    }
+
+    private int byteAt(long p) {
+        long rel = p - windowStart;
+        if (rel < 0 || rel >= windowLength) {
+            ensureMapped(p, p + 1);
+            rel = p - windowStart;
+        }
+        return window.get((int) rel) & 0xFF;
+    }
+
+    /**
+     * Garantiza que [start, end) esté dentro de la ventana mapeada, mapeando
+     * una nueva ventana que comienza en start si hace falta.
+     */
+    private void ensureMapped(long start, long end) {
+        if (window != null && start >= windowStart && end <= windowStart + windowLength) return;
+        long from = start;
+        long length = Math.min(Math.max(windowSize, end - from), size - from);
+        if (length > Integer.MAX_VALUE) throw new IllegalStateException("Token demasiado grande para mapear");
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        windowStart = from;
+        windowLength = (int) length;
+    }
+}
@@ -0,0 +1,272 @@
+package analizadorsintactico;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import jdk.jfr.*;
+
+/**
+ * Métricas de la traducción de un documento: bytes leídos, tokens por tipo,
+ * profundidad máxima de anidamiento, tiempo y memoria asignada por fase,
+ * errores sintácticos y bytes de XML escritos.
+ *
+ * Cada fase y cada documento se emiten además como eventos JFR
+ * (analizadorsintactico.Phase y analizadorsintactico.Document), que no cuestan
+ * nada si no hay una grabación activa. Al terminar, finish() suma el documento
+ * a MetricsRegistry, que los expone por JMX y como línea de resumen.
+ *
+ * Un valor -1 significa "no medido" (por ejemplo, la fase LEX cuando el lexer
+ * trabaja en streaming junto con el Parser, o la memoria asignada en un hilo
+ * virtual). NONE no mide nada y sirve para no tener que preguntar por null.
+ */
+public class Metrics {
+    public enum Phase {
+        /** Generación de tokens (solo si se hace antes del análisis). */
+        LEX,
+        /** Análisis sintáctico y generación del XML (en una sola pasada). */
+        TRANSLATE
+    }
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final Phase[] PHASES = Phase.values();
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // después de las constantes que usa el constructor
+    public static final Metrics NONE = new Metrics(null);
+
+    private final String source;
+    private final long startNanos = System.nanoTime();
+    private final DocumentEvent documentEvent = new DocumentEvent();
+
+    private long bytesRead = -1;
+    private final long[] tokenCounts = new long[TYPES.length];
+    private boolean tokensCounted = false;
+    private int maxDepth = -1;
+    private int syntaxErrors = -1;
+    private long xmlBytes = -1;
+    private long totalNanos = -1;
+
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final long[] phaseAllocated = new long[PHASES.length];
+    private final long[] phaseStart = new long[PHASES.length];
+    private final long[] phaseStartAllocated = new long[PHASES.length];
+    private final PhaseEvent[] phaseEvents = new PhaseEvent[PHASES.length];
+
+    public Metrics(String source) {
+        this.source = source;
+        Arrays.fill(phaseNanos, -1);
+        Arrays.fill(phaseAllocated, -1);
+        if (source != null) documentEvent.begin();
+    }
+
+    private boolean disabled() {
+        return this == NONE;
+    }
+
+    public void begin(Phase phase) {
+        if (disabled()) return;
+        int p = phase.ordinal();
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        phaseEvents[p] = event;
+        phaseStartAllocated[p] = THREADS.getCurrentThreadAllocatedBytes();
+        phaseStart[p] = System.nanoTime();
+    }
+
+    public void end(Phase phase) {
+        if (disabled()) return;
+        int p = phase.ordinal();
+        long nanos = System.nanoTime() - phaseStart[p];
+        long allocatedAfter = THREADS.getCurrentThreadAllocatedBytes();
+        phaseNanos[p] = Math.max(phaseNanos[p], 0) + nanos;
+        // en hilos virtuales la JVM no informa la memoria asignada (-1)
+        if (phaseStartAllocated[p] >= 0 && allocatedAfter >= 0) {
+            phaseAllocated[p] = Math.max(phaseAllocated[p], 0) + allocatedAfter - phaseStartAllocated[p];
+        }
+        PhaseEvent event = phaseEvents[p];
+        phaseEvents[p] = null;
+        if (event != null && event.shouldCommit()) {
+            event.source = source;
+            event.phase = phase.name();
+            event.allocatedBytes = phaseAllocated[p];
+            event.commit();
+        }
+    }
+
+    public void bytesRead(long bytes) {
+        if (disabled()) return;
+        bytesRead = bytes;
+    }
+
+    /** Cuenta los tokens de un buffer ya generado (incluye EOF). */
+    public void countTokens(TokenBuffer tokens) {
+        if (disabled()) return;
+        tokensCounted = true;
+        for (int i = 0; i < tokens.size(); i++) tokenCounts[tokens.type(i).ordinal()]++;
+    }
+
+    /**
+     * Envuelve un cursor en streaming para contar los tokens a medida que el
+     * Parser los consume. Si el análisis termina antes de EOF, los tokens no
+     * leídos no se cuentan.
+     */
+    public TokenCursor countTokens(TokenCursor cursor) {
+        if (disabled()) return cursor;
+        tokensCounted = true;
+        return new TokenCursor() {
+            private boolean eofCounted = false;
+
+            @Override
+            public TokenType type() {
+                TokenType t = cursor.type();
+                if (t == TokenType.EOF && !eofCounted) {
+                    eofCounted = true;
+                    tokenCounts[t.ordinal()]++;
+                }
+                return t;
+            }
+
+            @Override
+            public String value() {
+                return cursor.value();
+            }
+
+            @Override
+            public Symbol symbol() {
+                return cursor.symbol();
+            }
+
+            @Override
+            public int position() {
+                return cursor.position();
+            }
+
+            @Override
+            public int line() {
+                return cursor.line();
+            }
+
+            @Override
+            public int column() {
+                return cursor.column();
+            }
+
+            @Override
+            public void advance() {
+                TokenType t = cursor.type();
+                if (t != TokenType.EOF) tokenCounts[t.ordinal()]++;
+                cursor.advance();
+            }
+        };
+    }
+
+    /** Registra el resultado de la traducción y publica las métricas del documento. */
+    public void finish(Traductor traductor) {
+        if (disabled()) return;
+        finish(traductor.getDiagnostics().size(), traductor.getMaxDepth(), traductor.getXmlBytes());
+    }
+
+    /** Igual que finish(Traductor), para modos que no tienen un único Traductor (-1: no medido). */
+    public void finish(int syntaxErrors, int maxDepth, long xmlBytes) {
+        if (disabled()) return;
+        this.syntaxErrors = syntaxErrors;
+        this.maxDepth = maxDepth;
+        this.xmlBytes = xmlBytes;
+        this.totalNanos = System.nanoTime() - startNanos;
+
+        if (documentEvent.shouldCommit()) {
+            documentEvent.source = source;
+            documentEvent.bytesRead = bytesRead;
+            documentEvent.tokens = tokens();
+            documentEvent.maxDepth = maxDepth;
+            documentEvent.syntaxErrors = syntaxErrors;
+            documentEvent.xmlBytes = xmlBytes;
+            documentEvent.commit();
+        }
+        MetricsRegistry.get().record(this);
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /** Total de tokens, o -1 si no se contaron. */
+    public long tokens() {
+        if (!tokensCounted) return -1;
+        long total = 0;
+        for (long c : tokenCounts) total += c;
+        return total;
+    }
+
+    public long tokens(TokenType type) {
+        return tokensCounted ? tokenCounts[type.ordinal()] : -1;
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    public int syntaxErrors() {
+        return syntaxErrors;
+    }
+
+    public long xmlBytes() {
+        return xmlBytes;
+    }
+
+    public long nanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long allocatedBytes(Phase phase) {
+        return phaseAllocated[phase.ordinal()];
+    }
+
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    @Name("analizadorsintactico.Phase")
+    @Label("Fase de traducción")
+    @Category("Analizador Sintáctico")
+    static class PhaseEvent extends Event {
+        @Label("Documento")
+        String source;
+
+        @Label("Fase")
+        String phase;
+
+        @Label("Memoria asignada")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    @Name("analizadorsintactico.Document")
+    @Label("Documento traducido")
+    @Category("Analizador Sintáctico")
+    static class DocumentEvent extends Event {
+        @Label("Documento")
+        String source;
+
+        @Label("Bytes leídos")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Tokens")
+        long tokens;
+
+        @Label("Profundidad máxima")
+        int maxDepth;
+
+        @Label("Errores sintácticos")
+        int syntaxErrors;
+
+        @Label("Bytes XML")
+        @DataAmount
+        long xmlBytes;
+    }
+}
@@ -0,0 +1,40 @@
+package analizadorsintactico;
+
+import java.util.Map;
+
+/**
+ * Métricas acumuladas de todas las traducciones del proceso, publicadas por
+ * JMX como analizadorsintactico:type=Metrics (ver MetricsRegistry). Los
+ * tiempos están en nanosegundos y las cantidades de memoria en bytes.
+ */
+public interface MetricsMXBean {
+
+    long getDocuments();
+
+    long getInvalidDocuments();
+
+    long getBytesRead();
+
+    long getTokens();
+
+    Map<String, Long> getTokensByType();
+
+    int getMaxDepth();
+
+    long getSyntaxErrors();
+
+    long getXmlBytes();
+
+    long getLexNanos();
+
+    long getLexAllocatedBytes();
+
+    long getTranslateNanos();
+
+    long getTranslateAllocatedBytes();
+
+    long getTotalNanos();
+
+    /** La misma línea que imprime --metrics al terminar. */
+    String getSummaryLine();
+}
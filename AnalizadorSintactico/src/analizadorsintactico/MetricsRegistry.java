@@ -0,0 +1,182 @@
+package analizadorsintactico;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/**
+ * Acumula las métricas de todos los documentos traducidos en el proceso y
+ * las publica como MBean (analizadorsintactico:type=Metrics).
+ *
+ * Se crea y registra recién en el primer get(): iniciar JMX cuesta algunos
+ * cientos de milisegundos, que solo se pagan si se piden métricas. Es seguro
+ * usarlo desde varios hilos (modo por lotes, NDJSON).
+ */
+public final class MetricsRegistry implements MetricsMXBean {
+    public static final String OBJECT_NAME = "analizadorsintactico:type=Metrics";
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static volatile MetricsRegistry instance;
+
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder invalidDocuments = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final AtomicLongArray tokens = new AtomicLongArray(TYPES.length);
+    private final AtomicInteger maxDepth = new AtomicInteger(-1);
+    private final LongAdder syntaxErrors = new LongAdder();
+    private final LongAdder xmlBytes = new LongAdder();
+    private final LongAdder lexNanos = new LongAdder();
+    private final LongAdder lexAllocated = new LongAdder();
+    private final LongAdder translateNanos = new LongAdder();
+    private final LongAdder translateAllocated = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    private MetricsRegistry() { }
+
+    public static MetricsRegistry get() {
+        MetricsRegistry r = instance;
+        if (r != null) return r;
+        synchronized (MetricsRegistry.class) {
+            if (instance == null) {
+                MetricsRegistry created = new MetricsRegistry();
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(created, new ObjectName(OBJECT_NAME));
+                } catch (JMException e) {
+                    // sin JMX las métricas siguen disponibles en la línea de resumen
+                    System.err.println("No se pudo registrar el MBean de métricas: " + e.getMessage());
+                }
+                instance = created;
+            }
+            return instance;
+        }
+    }
+
+    void record(Metrics m) {
+        documents.increment();
+        if (m.syntaxErrors() > 0) {
+            invalidDocuments.increment();
+            syntaxErrors.add(m.syntaxErrors());
+        }
+        addIfMeasured(bytesRead, m.bytesRead());
+        for (TokenType t : TYPES) {
+            long count = m.tokens(t);
+            if (count > 0) tokens.addAndGet(t.ordinal(), count);
+        }
+        maxDepth.accumulateAndGet(m.maxDepth(), Math::max);
+        addIfMeasured(xmlBytes, m.xmlBytes());
+        addIfMeasured(lexNanos, m.nanos(Metrics.Phase.LEX));
+        addIfMeasured(lexAllocated, m.allocatedBytes(Metrics.Phase.LEX));
+        addIfMeasured(translateNanos, m.nanos(Metrics.Phase.TRANSLATE));
+        addIfMeasured(translateAllocated, m.allocatedBytes(Metrics.Phase.TRANSLATE));
+        addIfMeasured(totalNanos, m.totalNanos());
+    }
+
+    private static void addIfMeasured(LongAdder adder, long value) {
+        if (value >= 0) adder.add(value);
+    }
+
+    @Override
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    @Override
+    public long getInvalidDocuments() {
+        return invalidDocuments.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getTokens() {
+        long total = 0;
+        for (int i = 0; i < tokens.length(); i++) total += tokens.get(i);
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getTokensByType() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (TokenType t : TYPES) result.put(t.name(), tokens.get(t.ordinal()));
+        return result;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public long getSyntaxErrors() {
+        return syntaxErrors.sum();
+    }
+
+    @Override
+    public long getXmlBytes() {
+        return xmlBytes.sum();
+    }
+
+    @Override
+    public long getLexNanos() {
+        return lexNanos.sum();
+    }
+
+    @Override
+    public long getLexAllocatedBytes() {
+        return lexAllocated.sum();
+    }
+
+    @Override
+    public long getTranslateNanos() {
+        return translateNanos.sum();
+    }
+
+    @Override
+    public long getTranslateAllocatedBytes() {
+        return translateAllocated.sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Resumen en una sola línea de pares clave=valor (formato logfmt), fácil
+     * de extraer de los logs para seguir el rendimiento entre versiones.
+     */
+    @Override
+    public String getSummaryLine() {
+        StringBuilder sb = new StringBuilder("metrics");
+        field(sb, "documents", getDocuments());
+        field(sb, "invalid_documents", getInvalidDocuments());
+        field(sb, "bytes_read", getBytesRead());
+        field(sb, "tokens", getTokens());
+        for (TokenType t : TYPES) {
+            field(sb, "tokens_" + t.name().toLowerCase(Locale.ROOT), tokens.get(t.ordinal()));
+        }
+        field(sb, "max_depth", getMaxDepth());
+        field(sb, "syntax_errors", getSyntaxErrors());
+        field(sb, "xml_bytes", getXmlBytes());
+        field(sb, "lex_ms", millis(getLexNanos()));
+        field(sb, "lex_alloc_bytes", getLexAllocatedBytes());
+        field(sb, "translate_ms", millis(getTranslateNanos()));
+        field(sb, "translate_alloc_bytes", getTranslateAllocatedBytes());
+        field(sb, "total_ms", millis(getTotalNanos()));
+        double seconds = getTotalNanos() / 1e9;
+        field(sb, "mb_per_s", seconds > 0 ? String.format(Locale.ROOT, "%.2f", getBytesRead() / (1024.0 * 1024.0) / seconds) : "0");
+        return sb.toString();
+    }
+
+    private static void field(StringBuilder sb, String key, Object value) {
+        sb.append(' ').append(key).append('=').append(value);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,30 @@
+package analizadorsintactico;
+
+/**
+ * Eventos que emite Parser a medida que reconoce la gramática.
+ *
+ * Permite validar y traducir en una sola pasada: el Parser es el único que
+ * implementa la gramática (y su recuperación en Panic Mode) y quien traduce
+ * solo reacciona a estos eventos. El parámetro key es el símbolo del nombre
+ * del atributo que contiene al valor (ver SymbolTable), o null si el valor es
+ * la raíz o un elemento de un arreglo.
+ */
+public interface ParseListener {
+    ParseListener NONE = new ParseListener() { };
+
+    default void startObject(Symbol key) { }
+
+    default void endObject(Symbol key) { }
+
+    default void startArray(Symbol key) { }
+
+    default void endArray(Symbol key) { }
+
+    // Cada elemento de un arreglo queda encerrado entre startItem y endItem
+    default void startItem() { }
+
+    default void endItem() { }
+
+    // Valores string, number, true, false y null de un atributo
+    default void scalar(Symbol key, TokenType type, String value) { }
+}
@@ -2,26 +2,120 @@ package analizadorsintactico;
 
 import java.util.*;
 
+/**
+ * Analizador sintáctico LL(1) dirigido por tabla.
+ *
+ * En lugar de una función recursiva por no terminal, usa una pila explícita
+ * (en el heap) de estados pendientes: cada estado es lo que quedaba por hacer
+ * en una regla de la gramática cuando se descendió a un no terminal. Así la
+ * profundidad de anidamiento solo está limitada por la memoria y el costo por
+ * token es constante. La elección de producción para element y
+ * attribute-value sale de una tabla construida con los conjuntos FIRST de la
+ * gramática (ver README). La recuperación en Panic Mode y los mensajes de
+ * error son los mismos que los del analizador recursivo original.
+ *
+ * Los errores se registran como Diagnostic, con la línea y la columna del
+ * token cuando el cursor las conoce. Los tokens ERROR del lexer se informan
+ * como errores léxicos y se saltean. Al llegar a maxErrors errores el
+ * análisis se detiene (isAborted()); con maxErrors = 1 se corta en el primero.
+ */
 public class Parser {
-    private final List<Token> tokens;
-    private int pos = 0;
-    private Token current;
-    private final List<String> errors = new ArrayList<>();
+    /** Límite de errores por defecto, como el de javac. */
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    // Producciones elegidas por la tabla LL(1)
+    private static final byte P_ERROR = 0;
+    private static final byte P_OBJECT = 1;
+    private static final byte P_ARRAY = 2;
+    private static final byte P_SCALAR = 3;
+
+    // No terminales con más de una alternativa
+    private static final int NT_ELEMENT = 0;
+    private static final int NT_ATTRIBUTE_VALUE = 1;
+
+    private static final byte[][] TABLE = new byte[2][TokenType.values().length];
+
+    static {
+        for (byte[] row : TABLE) Arrays.fill(row, P_ERROR);
+        // element → object | array
+        TABLE[NT_ELEMENT][TokenType.L_LLAVE.ordinal()] = P_OBJECT;
+        TABLE[NT_ELEMENT][TokenType.L_CORCHETE.ordinal()] = P_ARRAY;
+        // attribute-value → element | string | number | true | false | null
+        TABLE[NT_ATTRIBUTE_VALUE][TokenType.L_LLAVE.ordinal()] = P_OBJECT;
+        TABLE[NT_ATTRIBUTE_VALUE][TokenType.L_CORCHETE.ordinal()] = P_ARRAY;
+        for (TokenType t : EnumSet.of(TokenType.LITERAL_CADENA, TokenType.LITERAL_NUM,
+                TokenType.PR_TRUE, TokenType.PR_FALSE, TokenType.PR_NULL)) {
+            TABLE[NT_ATTRIBUTE_VALUE][t.ordinal()] = P_SCALAR;
+        }
+    }
+
+    // Conjuntos de sincronización del Panic Mode
+    private static final Set<TokenType> SYNC_ELEMENT = EnumSet.of(TokenType.COMA, TokenType.R_CORCHETE, TokenType.R_LLAVE, TokenType.EOF);
+    private static final Set<TokenType> SYNC_OBJECT = EnumSet.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.R_CORCHETE, TokenType.EOF);
+    private static final Set<TokenType> SYNC_ATTRIBUTE = EnumSet.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF);
+    private static final Set<TokenType> SYNC_ATTRIBUTE_NAME = EnumSet.of(TokenType.DOS_PUNTOS, TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF);
+
+    // Estados que se apilan (el punto indica dónde se retoma la regla)
+    private static final int S_END = 0;             // json → element · EOF
+    private static final int S_ELEMENT = 1;         // · element
+    private static final int S_ITEM_END = 2;        // fin de un elemento de element-list
+    private static final int S_ELEMENT_LIST = 3;    // element-list → element · ( , element )*
+    private static final int S_ARRAY_CLOSE = 4;     // array → [ element-list · ]
+    private static final int S_ATTRIBUTE = 5;       // · attribute
+    private static final int S_ATTRIBUTE_VALUE = 6; // attribute → string : · attribute-value
+    private static final int S_ATTRIBUTE_LIST = 7;  // attributes-list → attribute · ( , attribute )*
+    private static final int S_OBJECT_CLOSE = 8;    // object → { attributes-list · }
+
+    private final TokenCursor current;
+    private final ParseListener listener;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private int maxErrors = DEFAULT_MAX_ERRORS;
+    private boolean aborted = false;
+
+    // Pila explícita: estado y, para los que lo necesitan, nombre del atributo
+    private int[] states = new int[64];
+    private Symbol[] keys = new Symbol[64];
+    private int depth = 0;
+
+    // Anidamiento de objetos y arreglos (para las métricas)
+    private int nesting = 0;
+    private int maxNesting = 0;
 
     public Parser(List<Token> tokens) {
-        this.tokens = tokens;
-        this.current = tokens.get(0);
+        this(TokenCursor.of(tokens));
+    }
+
+    // Permite validar directamente desde un lexer en modo streaming
+    public Parser(TokenCursor cursor) {
+        this(cursor, ParseListener.NONE);
+    }
+
+    // El listener recibe los eventos de la gramática (ver Traductor)
+    public Parser(TokenCursor cursor, ParseListener listener) {
+        this.current = cursor;
+        this.listener = listener;
+    }
+
+    /** Cantidad de errores tras la que se abandona el análisis (al menos 1). */
+    public void setMaxErrors(int maxErrors) {
+        if (maxErrors < 1) throw new IllegalArgumentException("maxErrors debe ser >= 1");
+        this.maxErrors = maxErrors;
     }
 
     private void advance() {
-        if (pos < tokens.size() - 1) {
-            pos++;
-            current = tokens.get(pos);
+        current.advance();
+        skipLexicalErrors();
+    }
+
+    private void skipLexicalErrors() {
+        while (current.type() == TokenType.ERROR && !aborted) {
+            report(Diagnostic.lexical(current.line(), current.column(), current.value()));
+            current.advance();
         }
     }
 
     private boolean match(TokenType type) {
-        if (current.getType() == type) {
+        if (current.type() == type) {
             advance();
             return true;
         }
@@ -29,141 +123,229 @@ public class Parser {
     }
 
     private void error(String msg) {
-        errors.add("Error en token '" + current.getValue() + "' (tipo " + current.getType() + "): " + msg);
+        report(new Diagnostic(Diagnostic.Kind.SYNTAX, current.line(), current.column(),
+                current.type(), current.value(), msg));
+    }
+
+    private void report(Diagnostic diagnostic) {
+        diagnostics.add(diagnostic);
+        if (diagnostics.size() >= maxErrors) aborted = true;
     }
 
     private void synchronize(Set<TokenType> syncSet) {
-        while (current.getType() != TokenType.EOF && !syncSet.contains(current.getType())) {
+        while (!aborted && current.type() != TokenType.EOF && !syncSet.contains(current.type())) {
             advance();
         }
     }
 
+    private void push(int state) {
+        push(state, null);
+    }
+
+    private void push(int state, Symbol key) {
+        if (depth == states.length) {
+            states = Arrays.copyOf(states, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+        }
+        states[depth] = state;
+        keys[depth] = key;
+        depth++;
+    }
+
+    // json → element EOF
     public void parse() {
-        json();
-        if (current.getType() != TokenType.EOF) {
-            error("Se esperaba EOF al final del archivo");
+        push(S_END);
+        push(S_ELEMENT);
+        skipLexicalErrors();
+        while (depth > 0 && !aborted) {
+            depth--;
+            int state = states[depth];
+            Symbol key = keys[depth];
+            keys[depth] = null;
+            switch (state) {
+                case S_ELEMENT -> element();
+                case S_ITEM_END -> listener.endItem();
+                case S_ELEMENT_LIST -> elementListNext();
+                case S_ARRAY_CLOSE -> arrayClose(key);
+                case S_ATTRIBUTE -> attribute();
+                case S_ATTRIBUTE_VALUE -> attributeValue(key);
+                case S_ATTRIBUTE_LIST -> attributesListNext();
+                case S_OBJECT_CLOSE -> objectClose(key);
+                case S_END -> {
+                    if (current.type() != TokenType.EOF) {
+                        error("Se esperaba EOF al final del archivo");
+                    }
+                }
+                default -> throw new IllegalStateException("Estado desconocido: " + state);
+            }
         }
     }
 
     public boolean isValid() {
-        return errors.isEmpty();
+        return diagnostics.isEmpty();
     }
 
+    /** Errores como texto, con su posición si se conoce (ver Diagnostic.toString()). */
     public List<String> getErrors() {
+        List<String> errors = new ArrayList<>(diagnostics.size());
+        for (Diagnostic d : diagnostics) errors.add(d.toString());
         return errors;
     }
 
-    // json → element EOF
-    private void json() {
-        element();
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /** true si el análisis se detuvo antes de terminar por llegar a maxErrors. */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /** Máxima cantidad de objetos y arreglos abiertos a la vez durante el análisis. */
+    public int getMaxDepth() {
+        return maxNesting;
+    }
+
+    private void open() {
+        if (++nesting > maxNesting) maxNesting = nesting;
     }
 
     // element → object | array
     private void element() {
-        if (current.getType() == TokenType.L_LLAVE) {
-            object();
-        } else if (current.getType() == TokenType.L_CORCHETE) {
-            array();
-        } else {
-            error("Se esperaba un objeto '{' o un arreglo '[' (element)");
-            synchronize(Set.of(TokenType.COMA, TokenType.R_CORCHETE, TokenType.R_LLAVE, TokenType.EOF));
+        switch (TABLE[NT_ELEMENT][current.type().ordinal()]) {
+            case P_OBJECT -> objectOpen(null);
+            case P_ARRAY -> arrayOpen(null);
+            default -> {
+                error("Se esperaba un objeto '{' o un arreglo '[' (element)");
+                synchronize(SYNC_ELEMENT);
+            }
         }
     }
 
     // array → [ element-list ] | []
-    private void array() {
-        if (!match(TokenType.L_CORCHETE)) return;
-        if (current.getType() == TokenType.R_CORCHETE) {
+    private void arrayOpen(Symbol key) {
+        advance(); // '[' ya predicho por la tabla
+        open();
+        listener.startArray(key);
+        if (current.type() == TokenType.R_CORCHETE) {
             match(TokenType.R_CORCHETE);
-            return;
+            nesting--;
+            listener.endArray(key);
+        } else {
+            push(S_ARRAY_CLOSE, key);
+            push(S_ELEMENT_LIST);
+            item();
         }
-        elementList();
+    }
+
+    private void arrayClose(Symbol key) {
         if (!match(TokenType.R_CORCHETE)) {
             error("Se esperaba ']' al finalizar el arreglo");
-            synchronize(Set.of(TokenType.COMA, TokenType.R_CORCHETE, TokenType.R_LLAVE, TokenType.EOF));
-            if (current.getType() == TokenType.R_CORCHETE) advance();
+            synchronize(SYNC_ELEMENT);
+            if (current.type() == TokenType.R_CORCHETE) advance();
         }
+        nesting--;
+        listener.endArray(key);
     }
 
     // element-list → element ( , element )*
-    private void elementList() {
-        element();
-        while (current.getType() == TokenType.COMA) {
-            match(TokenType.COMA);
-            if (current.getType() != TokenType.L_LLAVE && current.getType() != TokenType.L_CORCHETE) {
-                error("Se esperaba inicio de elemento después de ',' en element-list");
-                synchronize(Set.of(TokenType.COMA, TokenType.R_CORCHETE, TokenType.R_LLAVE, TokenType.EOF));
-                if (current.getType() == TokenType.R_CORCHETE) return;
-            } else {
-                element();
-            }
+    private void elementListNext() {
+        if (current.type() != TokenType.COMA) return;
+        match(TokenType.COMA);
+        if (current.type() != TokenType.L_LLAVE && current.type() != TokenType.L_CORCHETE) {
+            error("Se esperaba inicio de elemento después de ',' en element-list");
+            synchronize(SYNC_ELEMENT);
+            if (current.type() == TokenType.R_CORCHETE) return;
+            push(S_ELEMENT_LIST);
+        } else {
+            push(S_ELEMENT_LIST);
+            item();
         }
     }
 
+    private void item() {
+        listener.startItem();
+        push(S_ITEM_END);
+        push(S_ELEMENT);
+    }
+
     // object → { attributes-list } | {}
-    private void object() {
-        if (!match(TokenType.L_LLAVE)) return;
-        if (current.getType() == TokenType.R_LLAVE) {
+    private void objectOpen(Symbol key) {
+        advance(); // '{' ya predicho por la tabla
+        open();
+        listener.startObject(key);
+        if (current.type() == TokenType.R_LLAVE) {
             match(TokenType.R_LLAVE);
-            return;
+            nesting--;
+            listener.endObject(key);
+        } else {
+            push(S_OBJECT_CLOSE, key);
+            push(S_ATTRIBUTE_LIST);
+            push(S_ATTRIBUTE);
         }
-        attributesList();
+    }
+
+    private void objectClose(Symbol key) {
         if (!match(TokenType.R_LLAVE)) {
             error("Se esperaba '}' al finalizar el objeto");
-            synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.R_CORCHETE, TokenType.EOF));
-            if (current.getType() == TokenType.R_LLAVE) advance();
+            synchronize(SYNC_OBJECT);
+            if (current.type() == TokenType.R_LLAVE) advance();
         }
+        nesting--;
+        listener.endObject(key);
     }
 
     // attributes-list → attribute ( , attribute )*
-    private void attributesList() {
-        attribute();
-        while (current.getType() == TokenType.COMA) {
-            match(TokenType.COMA);
-            if (current.getType() != TokenType.LITERAL_CADENA) {
-                error("Se esperaba STRING (nombre de atributo) después de ','");
-                synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF));
-                if (current.getType() == TokenType.R_LLAVE) return;
-            } else {
-                attribute();
-            }
+    private void attributesListNext() {
+        if (current.type() != TokenType.COMA) return;
+        match(TokenType.COMA);
+        if (current.type() != TokenType.LITERAL_CADENA) {
+            error("Se esperaba STRING (nombre de atributo) después de ','");
+            synchronize(SYNC_ATTRIBUTE);
+            if (current.type() == TokenType.R_LLAVE) return;
+            push(S_ATTRIBUTE_LIST);
+        } else {
+            push(S_ATTRIBUTE_LIST);
+            push(S_ATTRIBUTE);
         }
     }
 
     // attribute → attribute-name : attribute-value
     private void attribute() {
-        attributeName();
+        Symbol key = attributeName();
         if (!match(TokenType.DOS_PUNTOS)) {
             error("Se esperaba ':' después del nombre del atributo");
-            synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF));
+            synchronize(SYNC_ATTRIBUTE);
             return;
         }
-        attributeValue();
+        push(S_ATTRIBUTE_VALUE, key);
     }
 
-    private void attributeName() {
-        if (current.getType() == TokenType.LITERAL_CADENA) {
+    private Symbol attributeName() {
+        if (current.type() == TokenType.LITERAL_CADENA) {
+            // sin listener no hace falta buscar el símbolo del token
+            Symbol key = listener == ParseListener.NONE ? null : current.symbol();
             match(TokenType.LITERAL_CADENA);
-        } else {
-            error("Se esperaba STRING como nombre del atributo");
-            synchronize(Set.of(TokenType.DOS_PUNTOS, TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF));
+            return key;
         }
+        error("Se esperaba STRING como nombre del atributo");
+        synchronize(SYNC_ATTRIBUTE_NAME);
+        return null;
     }
 
     // attribute-value → element | string | number | true | false | null
-    private void attributeValue() {
-        TokenType t = current.getType();
-        switch (t) {
-            case L_LLAVE -> object();
-            case L_CORCHETE -> array();
-            case LITERAL_CADENA -> match(TokenType.LITERAL_CADENA);
-            case LITERAL_NUM -> match(TokenType.LITERAL_NUM);
-            case PR_TRUE -> match(TokenType.PR_TRUE);
-            case PR_FALSE -> match(TokenType.PR_FALSE);
-            case PR_NULL -> match(TokenType.PR_NULL);
+    private void attributeValue(Symbol key) {
+        TokenType t = current.type();
+        switch (TABLE[NT_ATTRIBUTE_VALUE][t.ordinal()]) {
+            case P_OBJECT -> objectOpen(key);
+            case P_ARRAY -> arrayOpen(key);
+            case P_SCALAR -> {
+                if (listener != ParseListener.NONE) listener.scalar(key, t, current.value());
+                match(t);
+            }
             default -> {
                 error("Valor de atributo inválido. Se esperaba objeto, arreglo, string, number, true, false o null");
-                synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.R_CORCHETE, TokenType.EOF));
+                synchronize(SYNC_OBJECT);
             }
         }
     }
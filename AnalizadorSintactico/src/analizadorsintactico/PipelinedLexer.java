@@ -0,0 +1,167 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lexer en un hilo aparte: mientras el Parser (y el Traductor) consumen los
+ * tokens en el hilo que llama, otro hilo va tokenizando el resto del texto.
+ *
+ * Los tokens pasan en lotes de BATCH_TOKENS a través de un buffer circular
+ * de RING_SIZE lotes con un único productor y un único consumidor, sin
+ * locks: cada lado avanza su propio contador (tail el lexer, head el
+ * consumidor) y solo lee el del otro. Un lote es un TokenBuffer sobre el
+ * texto completo que se vacía y se reutiliza, así que en memoria hay a lo
+ * sumo RING_SIZE * BATCH_TOKENS tokens, no los del documento entero.
+ *
+ * Si un lado tiene que esperar al otro, primero gira unas vueltas y después
+ * se duerme de a intervalos cortos. close() detiene al lexer, por ejemplo
+ * cuando el análisis se corta antes de llegar al final (--fail-fast).
+ *
+ * Con un solo procesador no se crea el hilo: el consumidor tokeniza cada lote
+ * cuando termina el anterior, con la misma memoria acotada.
+ */
+public class PipelinedLexer implements TokenCursor, Closeable {
+    static final int BATCH_TOKENS = 1024;
+    // potencia de 2: la posición en el anillo es contador & (RING_SIZE - 1)
+    static final int RING_SIZE = 16;
+    private static final int SPINS = 256;
+    private static final long PARK_NANOS = 20_000;
+    // con un solo núcleo un segundo hilo no adelanta nada: solo agrega cambios de contexto
+    private static final boolean CONCURRENT = Runtime.getRuntime().availableProcessors() > 1;
+
+    private final TokenBuffer[] ring = new TokenBuffer[RING_SIZE];
+    // solo para calcular líneas y columnas: el índice de líneas se arma una vez para todos los lotes
+    private final TokenBuffer positions;
+    // lotes consumidos (los escribe solo el consumidor) y publicados (solo el lexer);
+    // una escritura volátil por lote publica los tokens que contiene
+    private volatile long head = 0;
+    private volatile long tail = 0;
+    private volatile boolean closed = false;
+    private volatile RuntimeException failure;
+
+    // sin hilo aparte, el consumidor tokeniza cada lote cuando lo necesita (desde inlineFrom)
+    private final Lexer inline;
+    private int inlineFrom = 0;
+
+    // estado del consumidor: lote actual, posición dentro de él y tokens de los lotes anteriores
+    private TokenBuffer batch;
+    private int pos = 0;
+    private int base = 0;
+
+    public PipelinedLexer(String filePath) throws IOException {
+        this(new Lexer(filePath));
+    }
+
+    public PipelinedLexer(Lexer lexer) {
+        for (int i = 0; i < RING_SIZE; i++) ring[i] = lexer.newBuffer();
+        positions = lexer.newBuffer();
+        if (CONCURRENT) {
+            inline = null;
+            Thread.ofPlatform().name("lexer").daemon().start(() -> produce(lexer));
+        } else {
+            inline = lexer;
+        }
+        batch = take();
+    }
+
+    // Hilo del lexer: llena el lote siguiente y lo publica, hasta agregar EOF
+    private void produce(Lexer lexer) {
+        try {
+            int from = 0;
+            long next = 0;
+            while (from >= 0) {
+                long spins = 0;
+                while (next - head == RING_SIZE) {
+                    if (closed) return;
+                    pause(++spins);
+                }
+                TokenBuffer tokens = ring[(int) next & (RING_SIZE - 1)];
+                tokens.clear();
+                from = lexer.tokenize(tokens, from, BATCH_TOKENS);
+                tail = ++next;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            tail = Long.MAX_VALUE;
+        }
+    }
+
+    // Consumidor: espera a que el lote head esté publicado
+    private TokenBuffer take() {
+        if (inline != null) {
+            TokenBuffer tokens = ring[0];
+            tokens.clear();
+            inlineFrom = inline.tokenize(tokens, inlineFrom, BATCH_TOKENS);
+            return tokens;
+        }
+        long h = head;
+        long spins = 0;
+        while (tail <= h) {
+            if (Thread.currentThread().isInterrupted()) {
+                closed = true;
+                throw new IllegalStateException("Lectura de tokens interrumpida");
+            }
+            pause(++spins);
+        }
+        if (failure != null) throw failure;
+        return ring[(int) h & (RING_SIZE - 1)];
+    }
+
+    private static void pause(long spins) {
+        if (spins % SPINS != 0) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    @Override
+    public TokenType type() {
+        return batch.type(pos);
+    }
+
+    @Override
+    public String value() {
+        return batch.value(pos);
+    }
+
+    @Override
+    public Symbol symbol() {
+        return batch.symbol(pos);
+    }
+
+    @Override
+    public int position() {
+        return base + pos;
+    }
+
+    @Override
+    public int line() {
+        return positions.lineAt(batch.offset(pos));
+    }
+
+    @Override
+    public int column() {
+        return positions.columnAt(batch.offset(pos));
+    }
+
+    @Override
+    public void advance() {
+        if (pos < batch.size() - 1) {
+            pos++;
+        } else if (batch.type(pos) != TokenType.EOF) {
+            // el lote actual vuelve al lexer y se pasa al siguiente
+            base += batch.size();
+            head = head + 1;
+            batch = take();
+            pos = 0;
+        }
+    }
+
+    /** Detiene el hilo del lexer si todavía no terminó. */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
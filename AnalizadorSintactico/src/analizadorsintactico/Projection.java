@@ -0,0 +1,447 @@
+package analizadorsintactico;
+
+import java.util.*;
+
+/**
+ * Proyección: traduce solo las partes del documento que indican una o más
+ * rutas, con un subconjunto de JSONPath:
+ *
+ *     personas[*].nombre        el nombre de cada persona
+ *     $.personas[0]             la primera persona completa
+ *     personas[*].hijos[*].*    todos los atributos de cada hijo
+ *     ['con.punto'].valor       un nombre con caracteres especiales
+ *
+ * Un paso es un nombre de atributo, * (cualquier atributo o elemento), [n]
+ * (el elemento n de un arreglo, desde 0) o [*] (cualquier elemento). Varias
+ * rutas se separan con comas; $ (la raíz) es opcional.
+ *
+ * filter() envuelve la fuente de tokens y le entrega al Parser solo los
+ * tokens de lo seleccionado y de los objetos y arreglos que llevan hasta
+ * ello (que quedan aunque ninguno de sus hijos se seleccione): el XML es la
+ * traducción del documento podado. El resto de los valores se saltea sin
+ * analizarlo; con MappedLexer, contando llaves y corchetes sobre los bytes,
+ * sin crear tokens (ver MappedLexer.skipValue()). Lo salteado no se valida:
+ * un error dentro de un valor descartado no se informa.
+ */
+public final class Projection {
+    private static final int KEY = 0;
+    private static final int INDEX = 1;
+    private static final int ANY = 2;
+
+    // resultado de clasificar un hijo
+    private static final int SKIP = 0;
+    private static final int PATH = 1;   // lleva hacia algo seleccionado: se entra filtrando
+    private static final int SELECTED = 2;
+
+    private record Step(int kind, String name, int index) { }
+
+    private final Step[][] paths;
+    private final String expression;
+
+    private Projection(Step[][] paths, String expression) {
+        this.paths = paths;
+        this.expression = expression;
+    }
+
+    /**
+     * Interpreta una o más rutas separadas por comas.
+     *
+     * @throws IllegalArgumentException si alguna ruta no es válida
+     */
+    public static Projection parse(String expression) {
+        List<Step[]> paths = new ArrayList<>();
+        Parser parser = new Parser(expression);
+        do {
+            paths.add(parser.path());
+        } while (parser.accept(','));
+        if (!parser.atEnd()) throw parser.error("se esperaba ',' o el final");
+        return new Projection(paths.toArray(new Step[0][]), expression);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    // Lector de las rutas, un carácter por vez
+    private static final class Parser {
+        private final String text;
+        private int pos = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Step[] path() {
+            List<Step> steps = new ArrayList<>();
+            // sin $ el primer paso puede ser un nombre sin '.' delante
+            boolean first = !accept('$');
+            while (!atEnd() && peek() != ',') {
+                if (accept('[')) {
+                    steps.add(bracket());
+                } else {
+                    if (!first && !accept('.')) throw error("se esperaba '.' o '['");
+                    steps.add(name());
+                }
+                first = false;
+            }
+            if (first) throw error("ruta vacía");
+            return steps.toArray(new Step[0]);
+        }
+
+        private Step bracket() {
+            Step step;
+            if (atEnd()) {
+                throw error("se esperaba ']'");
+            } else if (accept('*')) {
+                step = new Step(ANY, null, -1);
+            } else if (peek() == '\'' || peek() == '"') {
+                char quote = text.charAt(pos++);
+                int end = text.indexOf(quote, pos);
+                if (end < 0) throw error("falta la comilla de cierre");
+                step = new Step(KEY, text.substring(pos, end), -1);
+                pos = end + 1;
+            } else {
+                int start = pos;
+                while (pos < text.length() && peek() >= '0' && peek() <= '9') pos++;
+                if (start == pos) throw error("se esperaba un índice, * o un nombre entre comillas");
+                try {
+                    step = new Step(INDEX, null, Integer.parseInt(text.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    throw error("índice fuera de rango");
+                }
+            }
+            if (!accept(']')) throw error("se esperaba ']'");
+            return step;
+        }
+
+        private Step name() {
+            int start = pos;
+            while (!atEnd() && ".[],".indexOf(peek()) < 0) pos++;
+            String name = text.substring(start, pos).strip();
+            if (name.isEmpty()) throw error("falta el nombre del atributo");
+            return name.equals("*") ? new Step(ANY, null, -1) : new Step(KEY, name, -1);
+        }
+
+        boolean accept(char c) {
+            skipSpaces();
+            if (atEnd() || text.charAt(pos) != c) return false;
+            pos++;
+            return true;
+        }
+
+        private char peek() {
+            return text.charAt(pos);
+        }
+
+        boolean atEnd() {
+            skipSpaces();
+            return pos >= text.length();
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && text.charAt(pos) == ' ') pos++;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Ruta inválida '" + text + "' (posición " + (pos + 1) + "): " + message);
+        }
+    }
+
+    /**
+     * Clasifica el hijo (un atributo con nombre key, o el elemento número
+     * index si key es null) a partir del avance de cada ruta en el padre, y
+     * deja en child el avance en el hijo (-1: la ruta ya no coincide).
+     */
+    private int classify(int[] state, String key, int index, int[] child) {
+        int result = SKIP;
+        for (int p = 0; p < paths.length; p++) {
+            child[p] = -1;
+            int k = state[p];
+            if (k < 0) continue;
+            Step step = paths[p][k];
+            boolean matches = step.kind() == ANY
+                    || (key != null ? step.kind() == KEY && step.name().equals(key) : step.kind() == INDEX && step.index() == index);
+            if (!matches) continue;
+            child[p] = k + 1;
+            result = Math.max(result, k + 1 == paths[p].length ? SELECTED : PATH);
+        }
+        return result;
+    }
+
+    /** Fuente de tokens que deja pasar solo lo seleccionado (ver la descripción de la clase). */
+    public TokenCursor filter(TokenCursor source) {
+        return new Filter(source);
+    }
+
+    // qué viene en un contenedor que se filtra
+    private static final int START = 0;  // un atributo o elemento, o el cierre
+    private static final int NAME = 1;   // el nombre de un atributo que se conserva
+    private static final int COLON = 2;
+    private static final int VALUE = 3;  // el valor de un atributo o elemento que se conserva
+    private static final int AFTER = 4;  // ',' o el cierre
+
+    private static final class Frame {
+        boolean object;
+        int phase;
+        int index;
+        int kept;
+        // se consumió una ',' y todavía no apareció el atributo o elemento que la sigue
+        boolean comma;
+        // el hijo que se conserva está seleccionado completo (no se filtra adentro)
+        boolean selected;
+        int[] state;
+        int[] child;
+    }
+
+    private final class Filter implements TokenCursor {
+        private final TokenCursor source;
+        private final MappedLexer mapped;
+        private Frame[] frames = new Frame[8];
+        private int depth = 0;
+        private boolean rootSeen = false;
+        // tras un error de estructura (o fuera de la raíz) los tokens pasan sin filtrar
+        private boolean passthrough;
+        // llaves y corchetes abiertos dentro de un valor seleccionado completo
+        private int selectedDepth = 0;
+        // tokens ya consumidos de la fuente que todavía hay que entregar (',', nombre y ':')
+        private final TokenType[] queuedTypes = new TokenType[3];
+        private final String[] queuedValues = new String[3];
+        private int queueHead = 0;
+        private int queueSize = 0;
+
+        Filter(TokenCursor source) {
+            this.source = source;
+            this.mapped = source instanceof MappedLexer m ? m : null;
+            // una ruta vacía ($) selecciona todo el documento
+            for (Step[] path : paths) {
+                if (path.length == 0) passthrough = true;
+            }
+        }
+
+        @Override
+        public TokenType type() {
+            return queueSize > 0 ? queuedTypes[queueHead] : source.type();
+        }
+
+        @Override
+        public String value() {
+            return queueSize > 0 ? queuedValues[queueHead] : source.value();
+        }
+
+        @Override
+        public Symbol symbol() {
+            return queueSize > 0 ? SymbolTable.SHARED.get(queuedValues[queueHead]) : source.symbol();
+        }
+
+        // un token reentregado nunca es el del error: el Parser informa en el siguiente
+        @Override
+        public int line() {
+            return source.line();
+        }
+
+        @Override
+        public int column() {
+            return source.column();
+        }
+
+        @Override
+        public void advance() {
+            if (queueSize > 0) {
+                queueHead++;
+                queueSize--;
+                return;
+            }
+            if (passthrough) {
+                source.advance();
+                return;
+            }
+            TokenType consumed = source.type();
+            source.advance();
+            consumed(consumed);
+            if (!passthrough && selectedDepth == 0) settle();
+        }
+
+        // Actualiza la estructura con el token que el Parser acaba de consumir
+        private void consumed(TokenType t) {
+            if (selectedDepth > 0) {
+                if (isOpen(t)) selectedDepth++;
+                else if (isClose(t)) selectedDepth--;
+                return;
+            }
+            if (depth == 0) {
+                if (!rootSeen && isOpen(t)) {
+                    rootSeen = true;
+                    int[] state = new int[paths.length];
+                    push(t == TokenType.L_LLAVE, state);
+                } else {
+                    passthrough = true;
+                }
+                return;
+            }
+            Frame f = frames[depth - 1];
+            switch (f.phase) {
+                case NAME -> f.phase = COLON;
+                case COLON -> f.phase = VALUE;
+                case VALUE -> {
+                    // al volver a este contenedor ya pasó el valor
+                    f.phase = AFTER;
+                    if (isOpen(t)) {
+                        if (f.selected) {
+                            selectedDepth = 1;
+                        } else {
+                            push(t == TokenType.L_LLAVE, f.child);
+                        }
+                    }
+                }
+                default -> {
+                    // el cierre del contenedor (settle() no entrega otra cosa en START o AFTER)
+                    if (t != close(f)) {
+                        passthrough = true;
+                        return;
+                    }
+                    depth--;
+                    if (depth == 0) passthrough = true;
+                }
+            }
+        }
+
+        private void push(boolean object, int[] state) {
+            if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+            Frame f = frames[depth];
+            if (f == null) {
+                f = frames[depth] = new Frame();
+                f.state = new int[paths.length];
+                f.child = new int[paths.length];
+            }
+            System.arraycopy(state, 0, f.state, 0, paths.length);
+            f.object = object;
+            f.phase = START;
+            f.index = 0;
+            f.kept = 0;
+            f.comma = false;
+            f.selected = false;
+            depth++;
+        }
+
+        /**
+         * Deja en la fuente el próximo token a entregar: saltea los atributos
+         * y elementos no seleccionados (con sus comas) y, si el siguiente que
+         * se conserva no es el primero, reentrega una ','.
+         */
+        private void settle() {
+            while (depth > 0) {
+                Frame f = frames[depth - 1];
+                if (f.phase != START && f.phase != AFTER) return;
+                TokenType c = source.type();
+                if (f.phase == AFTER) {
+                    if (c == TokenType.COMA) {
+                        source.advance();
+                        f.phase = START;
+                        f.comma = true;
+                        continue;
+                    }
+                    if (c != close(f)) passthrough = true;
+                    return;
+                }
+                if (c == close(f)) {
+                    // una ',' antes del cierre es un error: se le entrega al Parser
+                    if (f.comma) queue(TokenType.COMA, ",");
+                    return;
+                }
+                int kind;
+                String name = null;
+                if (f.object) {
+                    if (c != TokenType.LITERAL_CADENA) {
+                        fail(f);
+                        return;
+                    }
+                    name = source.value();
+                    kind = classify(f.state, name, -1, f.child);
+                } else {
+                    if (!isOpen(c)) {
+                        fail(f);
+                        return;
+                    }
+                    kind = classify(f.state, null, f.index++, f.child);
+                }
+                if (kind != SKIP) {
+                    if (f.kept++ > 0) queue(TokenType.COMA, ",");
+                    f.comma = false;
+                    f.selected = kind == SELECTED;
+                    f.phase = f.object ? NAME : VALUE;
+                    return;
+                }
+                if (f.object) {
+                    source.advance();
+                    if (source.type() != TokenType.DOS_PUNTOS) {
+                        fail(f);
+                        queue(TokenType.LITERAL_CADENA, name);
+                        return;
+                    }
+                    source.advance();
+                    if (!isValueStart(source.type())) {
+                        fail(f);
+                        queue(TokenType.LITERAL_CADENA, name);
+                        queue(TokenType.DOS_PUNTOS, ":");
+                        return;
+                    }
+                }
+                skipValue();
+                f.comma = false;
+                f.phase = AFTER;
+            }
+        }
+
+        // Estructura inesperada: lo que queda pasa sin filtrar para que el Parser informe el error
+        private void fail(Frame f) {
+            passthrough = true;
+            if (f.comma && f.kept > 0) queue(TokenType.COMA, ",");
+        }
+
+        private void queue(TokenType type, String value) {
+            if (queueSize == 0) queueHead = 0;
+            queuedTypes[queueHead + queueSize] = type;
+            queuedValues[queueHead + queueSize] = value;
+            queueSize++;
+        }
+
+        private void skipValue() {
+            if (mapped != null) {
+                mapped.skipValue();
+                return;
+            }
+            if (!isOpen(source.type())) {
+                source.advance();
+                return;
+            }
+            int open = 0;
+            do {
+                TokenType t = source.type();
+                if (t == TokenType.EOF) return;
+                if (isOpen(t)) open++;
+                else if (isClose(t)) open--;
+                source.advance();
+            } while (open > 0);
+        }
+    }
+
+    private static TokenType close(Frame f) {
+        return f.object ? TokenType.R_LLAVE : TokenType.R_CORCHETE;
+    }
+
+    private static boolean isOpen(TokenType t) {
+        return t == TokenType.L_LLAVE || t == TokenType.L_CORCHETE;
+    }
+
+    private static boolean isClose(TokenType t) {
+        return t == TokenType.R_LLAVE || t == TokenType.R_CORCHETE;
+    }
+
+    private static boolean isValueStart(TokenType t) {
+        return switch (t) {
+            case L_LLAVE, L_CORCHETE, LITERAL_CADENA, LITERAL_NUM, PR_TRUE, PR_FALSE, PR_NULL -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,287 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Analizador léxico en modo streaming (pull).
+ *
+ * A diferencia de Lexer, no carga el archivo completo en memoria ni genera la
+ * lista de tokens de antemano: lee la entrada a través de un buffer de tamaño
+ * fijo que se rellena a medida que se consume, y entrega un token por cada
+ * llamada a nextToken(). El consumo de memoria es constante respecto del
+ * tamaño de la entrada (solo crece con el largo del token más grande).
+ *
+ * Reconoce los mismos tokens que Lexer. Como Lexer, lo que no reconoce lo
+ * entrega como un token ERROR y sigue; una cadena sin cerrar es un token ERROR
+ * con la comilla que llega hasta el final de la entrada. Los errores de
+ * lectura se propagan como UncheckedIOException.
+ */
+public class StreamLexer implements TokenCursor, Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final Token EOF_TOKEN = new Token(TokenType.EOF, "EOF");
+
+    // Los tokens de puntuación no cambian: se reutiliza una única instancia de cada uno
+    private static final Token L_LLAVE = new Token(TokenType.L_LLAVE, "{");
+    private static final Token R_LLAVE = new Token(TokenType.R_LLAVE, "}");
+    private static final Token L_CORCHETE = new Token(TokenType.L_CORCHETE, "[");
+    private static final Token R_CORCHETE = new Token(TokenType.R_CORCHETE, "]");
+    private static final Token DOS_PUNTOS = new Token(TokenType.DOS_PUNTOS, ":");
+    private static final Token COMA = new Token(TokenType.COMA, ",");
+
+    private final Reader reader;
+    private final char[] buffer;
+    // el buffer como CharSequence, para validar secuencias de escape sin copiarlas
+    private final CharBuffer view;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean inputExhausted = false;
+    private boolean finished = false;
+
+    // buffer reutilizable para armar el valor de cadenas, números y palabras
+    private final StringBuilder lexeme = new StringBuilder();
+    // solo para las cadenas con secuencias de escape
+    private final StringBuilder decoded = new StringBuilder();
+    private Token current;
+
+    // posición: base es el desplazamiento en la entrada de buffer[0]
+    private long base = 0;
+    private int lineNumber = 1;
+    private long lineStart = 0;
+    private int tokenLine;
+    private int tokenColumn;
+
+    /** Si el archivo está comprimido, se descomprime en otro hilo a medida que se lee (ver Compression). */
+    public StreamLexer(String filePath) throws IOException {
+        this(new InputStreamReader(Compression.open(Paths.get(filePath)), StandardCharsets.UTF_8));
+    }
+
+    public StreamLexer(ReadableByteChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+    public StreamLexer(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /** bufferSize debe alcanzar para la secuencia de escape más larga (\\uXXXX). */
+    public StreamLexer(Reader reader, int bufferSize) {
+        if (bufferSize < StringEscapes.MAX_ESCAPE_LENGTH) {
+            throw new IllegalArgumentException("bufferSize debe ser >= " + StringEscapes.MAX_ESCAPE_LENGTH);
+        }
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.view = CharBuffer.wrap(buffer);
+    }
+
+    /**
+     * Devuelve el siguiente token de la entrada. Una vez alcanzado el final
+     * devuelve siempre EOF.
+     */
+    public Token nextToken() {
+        if (finished) return EOF_TOKEN;
+
+        int c;
+        while ((c = peek(0)) >= 0 && Character.isWhitespace(c)) {
+            if (c == '\n') newLine(pos);
+            pos++;
+        }
+        tokenLine = lineNumber;
+        tokenColumn = (int) (base + pos - lineStart) + 1;
+        if (c < 0) return finish();
+
+        char currentChar = (char) c;
+        if (currentChar == '"') {
+            pos++;
+            return readString();
+        } else if (Character.isDigit(currentChar) || (currentChar == '-' && isDigit(peek(1)))) {
+            return new Token(TokenType.LITERAL_NUM, readNumber());
+        } else if (Character.isLetter(currentChar)) {
+            String word = readWord();
+            TokenType type = getKeywordType(word);
+            return new Token(type, word);
+        } else {
+            Token token = punctuation(currentChar);
+            pos++;
+            return token != null ? token : new Token(TokenType.ERROR, String.valueOf(currentChar));
+        }
+    }
+
+    // TokenCursor: permite que Parser y Traductor consuman el lexer directamente
+
+    @Override
+    public TokenType type() {
+        return currentToken().getType();
+    }
+
+    @Override
+    public String value() {
+        return currentToken().getValue();
+    }
+
+    @Override
+    public void advance() {
+        if (currentToken().getType() != TokenType.EOF) {
+            current = nextToken();
+        }
+    }
+
+    @Override
+    public int line() {
+        currentToken();
+        return tokenLine;
+    }
+
+    @Override
+    public int column() {
+        currentToken();
+        return tokenColumn;
+    }
+
+    private Token currentToken() {
+        if (current == null) current = nextToken();
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Token finish() {
+        finished = true;
+        return EOF_TOKEN;
+    }
+
+    private Token readString() {
+        lexeme.setLength(0);
+        boolean escaped = false;
+        boolean invalid = false;
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                return new Token(TokenType.ERROR, "\"");
+            }
+            // copiamos en bloque hasta la comilla de cierre, una barra o el fin del buffer
+            int start = pos;
+            char ch = 0;
+            while (pos < limit && (ch = buffer[pos]) != '"' && ch != '\\') {
+                if (ch == '\n') newLine(pos);
+                pos++;
+            }
+            lexeme.append(buffer, start, pos - start);
+            if (pos == limit) continue;
+            if (ch == '"') {
+                pos++; // comilla de cierre
+                break;
+            }
+            // la secuencia de escape se copia tal cual y la cadena se decodifica al final
+            escaped = true;
+            fill(StringEscapes.MAX_ESCAPE_LENGTH);
+            int length = StringEscapes.escapeLength(view, pos, limit);
+            if (length == 0) {
+                // se saltea la barra y el carácter siguiente, que no es una comilla
+                invalid = true;
+                length = Math.min(2, limit - pos);
+                if (length == 2 && buffer[pos + 1] == '\n') newLine(pos + 1);
+            }
+            lexeme.append(buffer, pos, length);
+            pos += length;
+        }
+        if (invalid) return new Token(TokenType.ERROR, "\"" + lexeme + "\"");
+        String value = escaped ? StringEscapes.unescape(lexeme, 0, lexeme.length(), decoded) : lexeme.toString();
+        return new Token(TokenType.LITERAL_CADENA, value);
+    }
+
+    private String readNumber() {
+        lexeme.setLength(0);
+        if (peek(0) == '-') {
+            lexeme.append('-');
+            pos++;
+        }
+        int c;
+        while ((c = peek(0)) >= 0 && (Character.isDigit(c) || c == '.')) {
+            lexeme.append((char) c);
+            pos++;
+        }
+        return lexeme.toString();
+    }
+
+    private String readWord() {
+        lexeme.setLength(0);
+        int c;
+        while ((c = peek(0)) >= 0 && Character.isLetter(c)) {
+            lexeme.append((char) c);
+            pos++;
+        }
+        return lexeme.toString();
+    }
+
+    // el carácter en buffer[at] es un salto de línea
+    private void newLine(int at) {
+        lineNumber++;
+        lineStart = base + at + 1;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= 0 && Character.isDigit(c);
+    }
+
+    private TokenType getKeywordType(String word) {
+        return switch (word.toLowerCase()) {
+            case "true" -> TokenType.PR_TRUE;
+            case "false" -> TokenType.PR_FALSE;
+            case "null" -> TokenType.PR_NULL;
+            default -> TokenType.ERROR;
+        };
+    }
+
+    private static Token punctuation(char c) {
+        return switch (c) {
+            case '{' -> L_LLAVE;
+            case '}' -> R_LLAVE;
+            case '[' -> L_CORCHETE;
+            case ']' -> R_CORCHETE;
+            case ':' -> DOS_PUNTOS;
+            case ',' -> COMA;
+            default -> null;
+        };
+    }
+
+    /** Carácter en pos + ahead, o -1 si la entrada termina antes. */
+    private int peek(int ahead) {
+        if (pos + ahead >= limit && !fill(ahead + 1)) return -1;
+        return buffer[pos + ahead];
+    }
+
+    /**
+     * Garantiza al menos 'needed' caracteres disponibles desde pos,
+     * compactando el buffer y leyendo más de la entrada si hace falta.
+     */
+    private boolean fill(int needed) {
+        if (limit - pos >= needed) return true;
+        if (inputExhausted) return false;
+        int remaining = limit - pos;
+        if (remaining > 0 && pos > 0) System.arraycopy(buffer, pos, buffer, 0, remaining);
+        base += pos;
+        pos = 0;
+        limit = remaining;
+        try {
+            while (limit < needed) {
+                int n = reader.read(buffer, limit, buffer.length - limit);
+                if (n < 0) {
+                    inputExhausted = true;
+                    return false;
+                }
+                limit += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+}
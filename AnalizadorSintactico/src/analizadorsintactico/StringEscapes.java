@@ -0,0 +1,86 @@
+package analizadorsintactico;
+
+/**
+ * Secuencias de escape de las cadenas JSON (\" \\ \/ \b \f \n \r \t y \\uXXXX).
+ *
+ * Los lexers buscan en bloque la comilla de cierre o una barra invertida: una
+ * cadena sin barras (el caso común) se entrega como un rango del texto sin
+ * copiarlo. Si tiene escapes, el lexer solo valida las secuencias al
+ * recorrerla y la marca; el valor se decodifica con unescape() recién cuando
+ * alguien lo pide, sobre un StringBuilder reutilizable.
+ */
+final class StringEscapes {
+    /** Largo de la secuencia más larga (\\uXXXX). */
+    static final int MAX_ESCAPE_LENGTH = 6;
+
+    private StringEscapes() {
+    }
+
+    /** true si c puede seguir a la barra como escape de un carácter. */
+    static boolean isSimpleEscape(int c) {
+        return switch (c) {
+            case '"', '\\', '/', 'b', 'f', 'n', 'r', 't' -> true;
+            default -> false;
+        };
+    }
+
+    /** Valor de un dígito hexadecimal ASCII, o -1 (Character.digit aceptaría otros dígitos Unicode). */
+    static int hexValue(int c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    /**
+     * Largo de la secuencia de escape cuya barra está en s[at], o 0 si no es
+     * válida o no termina antes de end.
+     */
+    static int escapeLength(CharSequence s, int at, int end) {
+        if (at + 1 >= end) return 0;
+        char c = s.charAt(at + 1);
+        if (isSimpleEscape(c)) return 2;
+        if (c != 'u' || at + MAX_ESCAPE_LENGTH > end) return 0;
+        for (int k = at + 2; k < at + MAX_ESCAPE_LENGTH; k++) {
+            if (hexValue(s.charAt(k)) < 0) return 0;
+        }
+        return MAX_ESCAPE_LENGTH;
+    }
+
+    /**
+     * Decodifica s[start, end), que ya se validó con escapeLength. Los tramos
+     * sin escapes se copian en bloque.
+     */
+    static String unescape(CharSequence s, int start, int end, StringBuilder scratch) {
+        scratch.setLength(0);
+        int run = start;
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) != '\\') continue;
+            scratch.append(s, run, i);
+            char c = s.charAt(i + 1);
+            if (c == 'u') {
+                int cp = 0;
+                for (int k = i + 2; k < i + MAX_ESCAPE_LENGTH; k++) cp = (cp << 4) | hexValue(s.charAt(k));
+                scratch.append((char) cp);
+                i += MAX_ESCAPE_LENGTH - 1;
+            } else {
+                scratch.append(decodeSimple(c));
+                i++;
+            }
+            run = i + 1;
+        }
+        scratch.append(s, run, end);
+        return scratch.toString();
+    }
+
+    private static char decodeSimple(char c) {
+        return switch (c) {
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            default -> c; // " \ /
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package analizadorsintactico;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Nombre de atributo junto con su etiqueta XML ya sanitizada y codificada.
+ *
+ * Los símbolos se obtienen de una SymbolTable, de modo que una clave que se
+ * repite en todo el documento se sanitiza y codifica una sola vez. Son
+ * inmutables y se pueden compartir entre hilos.
+ */
+public final class Symbol {
+    private final String name;
+    private final String tagName;
+    private final byte[] tag;
+    final int hash;
+
+    Symbol(String name, int hash) {
+        this.name = name;
+        this.tagName = sanitizeXmlName(name);
+        this.tag = tagName.getBytes(StandardCharsets.UTF_8);
+        this.hash = hash;
+    }
+
+    /** Símbolo fuera de cualquier tabla (por ejemplo, para etiquetas fijas). */
+    public static Symbol of(String name) {
+        return new Symbol(name, SymbolTable.hash(name, 0, name.length()));
+    }
+
+    /** Nombre del atributo tal como aparece en el JSON. */
+    public String name() {
+        return name;
+    }
+
+    /** Nombre de etiqueta XML válido derivado del nombre. */
+    public String tagName() {
+        return tagName;
+    }
+
+    /** tagName() en UTF-8, listo para escribir; no debe modificarse. */
+    public byte[] tag() {
+        return tag;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Sanitiza un nombre de etiqueta para que sea un nombre XML válido.
+     * Reemplaza caracteres inválidos por '_' y asegura que no comience con dígito.
+     */
+    static String sanitizeXmlName(String s) {
+        if (s == null || s.isEmpty()) return "key";
+        // Escapar y luego normalizar: eliminamos espacios y caracteres no permitidos
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((i == 0 && (Character.isLetter(c) || c == '_')) || (i > 0 && (Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.'))) {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        // Si el primer carácter no es letra o '_' hacer un prefijo
+        if (!Character.isLetter(sb.charAt(0)) && sb.charAt(0) != '_') {
+            return "k_" + sb.toString();
+        }
+        return sb.toString();
+    }
+}
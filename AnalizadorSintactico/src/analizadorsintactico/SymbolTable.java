@@ -0,0 +1,93 @@
+package analizadorsintactico;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tabla de símbolos para los nombres de atributo, compartida por el lexer y
+ * el traductor.
+ *
+ * Una clave se busca directamente sobre el rango de caracteres del texto
+ * fuente, sin crear un String; si ya estaba en la tabla se devuelve el mismo
+ * Symbol, con su etiqueta XML ya sanitizada y codificada. La tabla es de
+ * direccionamiento abierto sobre un arreglo de tamaño fijo y admite lecturas
+ * y altas concurrentes sin bloqueos (los Symbol son inmutables).
+ *
+ * El tamaño está acotado: cuando se llena, o si la clave es demasiado larga,
+ * se devuelve un Symbol nuevo que no se guarda. Así una entrada con millones
+ * de claves distintas no hace crecer la tabla; solo pierde el beneficio.
+ */
+public final class SymbolTable {
+    public static final int DEFAULT_MAX_SYMBOLS = 4096;
+    public static final int DEFAULT_MAX_KEY_LENGTH = 128;
+
+    /** Tabla que usan por defecto los cursores de tokens. */
+    public static final SymbolTable SHARED = new SymbolTable(DEFAULT_MAX_SYMBOLS, DEFAULT_MAX_KEY_LENGTH);
+
+    // cantidad máxima de posiciones a revisar antes de desistir
+    private static final int MAX_PROBES = 16;
+
+    private final AtomicReferenceArray<Symbol> slots;
+    private final int mask;
+    private final int maxSymbols;
+    private final int maxKeyLength;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public SymbolTable(int maxSymbols, int maxKeyLength) {
+        if (maxSymbols < 1) throw new IllegalArgumentException("maxSymbols debe ser >= 1");
+        this.maxSymbols = maxSymbols;
+        this.maxKeyLength = maxKeyLength;
+        // factor de carga <= 0.5 para que las búsquedas sean cortas
+        int capacity = Integer.highestOneBit(maxSymbols) << 2;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public Symbol get(String name) {
+        return get(name, 0, name.length());
+    }
+
+    /** Símbolo para los caracteres [start, end) de text. */
+    public Symbol get(CharSequence text, int start, int end) {
+        int length = end - start;
+        int h = hash(text, start, end);
+        if (length > maxKeyLength) return new Symbol(text.subSequence(start, end).toString(), h);
+
+        int i = h & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            Symbol s = slots.get(i);
+            if (s == null) {
+                if (size.get() >= maxSymbols) break;
+                Symbol created = new Symbol(text.subSequence(start, end).toString(), h);
+                if (slots.compareAndSet(i, null, created)) {
+                    size.incrementAndGet();
+                    return created;
+                }
+                s = slots.get(i); // otro hilo ocupó la posición: puede ser la misma clave
+            }
+            if (s.hash == h && equals(s.name(), text, start, end)) return s;
+            i = (i + 1) & mask;
+        }
+        return new Symbol(text.subSequence(start, end).toString(), h);
+    }
+
+    /** Cantidad de símbolos guardados. */
+    public int size() {
+        return size.get();
+    }
+
+    static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + text.charAt(i);
+        // mezcla los bits altos para no depender solo de los últimos caracteres
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int k = 0; k < name.length(); k++) {
+            if (name.charAt(k) != text.charAt(start + k)) return false;
+        }
+        return true;
+    }
+}
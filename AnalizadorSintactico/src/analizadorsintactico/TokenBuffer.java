@@ -0,0 +1,218 @@
+package analizadorsintactico;
+
+import java.util.*;
+
+/**
+ * Almacén compacto de tokens en arreglos primitivos (struct-of-arrays).
+ *
+ * En lugar de un objeto Token con su String por cada token, se guarda el tipo
+ * (ordinal de TokenType) y el rango [start, end) del valor dentro del texto
+ * fuente. El String del valor se materializa solo cuando se pide con value(i),
+ * y la puntuación devuelve siempre la misma constante. Una cadena con
+ * secuencias de escape se marca al agregarla y se decodifica al pedir su valor.
+ *
+ * La línea y la columna de un token no se guardan: se calculan a partir de su
+ * posición en el texto solo cuando hace falta informar un error.
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+    // bit del tipo que marca una cadena con secuencias de escape
+    private static final int ESCAPED = 0x80;
+    private static final int TYPE_MASK = 0x7F;
+
+    private final CharSequence source;
+    private final int firstLine;
+    // inicio de cada línea del texto, calculado la primera vez que se pide una posición
+    private int[] lineStarts;
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private int size = 0;
+    private final StringBuilder scratch = new StringBuilder();
+
+    public TokenBuffer(CharSequence source) {
+        this(source, 1);
+    }
+
+    /** firstLine es el número de la primera línea del texto (para los errores). */
+    public TokenBuffer(CharSequence source, int firstLine) {
+        this.source = source;
+        this.firstLine = firstLine;
+        // nunca hay más tokens que caracteres (más EOF): textos cortos no reservan de más
+        int capacity = Math.min(INITIAL_CAPACITY, source.length() + 1);
+        types = new byte[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+    }
+
+    public void add(TokenType type, int start, int end) {
+        add(type, start, end, false);
+    }
+
+    /** escaped indica que el valor tiene secuencias de escape (ya validadas) que hay que decodificar. */
+    public void add(TokenType type, int start, int end, boolean escaped) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        types[size] = (byte) (escaped ? type.ordinal() | ESCAPED : type.ordinal());
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Texto sobre el que están los rangos de los tokens. */
+    CharSequence source() {
+        return source;
+    }
+
+    /** Vacía el buffer conservando los arreglos (para reutilizarlo con el mismo texto). */
+    void clear() {
+        size = 0;
+    }
+
+    public TokenType type(int i) {
+        return TYPES[types[i] & TYPE_MASK];
+    }
+
+    public int start(int i) {
+        return starts[i];
+    }
+
+    public int end(int i) {
+        return ends[i];
+    }
+
+    public String value(int i) {
+        return switch (type(i)) {
+            case L_LLAVE -> "{";
+            case R_LLAVE -> "}";
+            case L_CORCHETE -> "[";
+            case R_CORCHETE -> "]";
+            case DOS_PUNTOS -> ":";
+            case COMA -> ",";
+            case EOF -> "EOF";
+            default -> isEscaped(i)
+                    ? StringEscapes.unescape(source, starts[i], ends[i], scratch)
+                    : source.subSequence(starts[i], ends[i]).toString();
+        };
+    }
+
+    boolean isEscaped(int i) {
+        return (types[i] & ESCAPED) != 0;
+    }
+
+    /** Línea del token i, contando desde firstLine. */
+    public int line(int i) {
+        return lineAt(offset(i));
+    }
+
+    /** Columna del token i (desde 1, en caracteres). */
+    public int column(int i) {
+        return columnAt(offset(i));
+    }
+
+    /** Línea de la posición offset del texto. */
+    int lineAt(int offset) {
+        return firstLine + lineIndex(offset);
+    }
+
+    int columnAt(int offset) {
+        return offset - lineStarts[lineIndex(offset)] + 1;
+    }
+
+    // donde empieza el token en el texto: el valor de una cadena empieza después de la comilla
+    int offset(int i) {
+        return type(i) == TokenType.LITERAL_CADENA ? starts[i] - 1 : starts[i];
+    }
+
+    private int lineIndex(int offset) {
+        if (lineStarts == null) lineStarts = computeLineStarts();
+        int lo = 0;
+        int hi = lineStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (lineStarts[mid] <= offset) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private int[] computeLineStarts() {
+        int[] result = new int[16];
+        int count = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) != '\n') continue;
+            if (count == result.length) result = Arrays.copyOf(result, count * 2);
+            result[count++] = i + 1;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Símbolo del valor del token i, buscado sin materializar el String (salvo que tenga escapes). */
+    public Symbol symbol(int i) {
+        if (isEscaped(i)) return SymbolTable.SHARED.get(value(i));
+        return SymbolTable.SHARED.get(source, starts[i], ends[i]);
+    }
+
+    /** Convierte a la representación con objetos (compatibilidad con List<Token>). */
+    public List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(new Token(type(i), value(i)));
+        }
+        return tokens;
+    }
+
+    /**
+     * Cursor sobre el buffer: avanzar solo incrementa un índice, sin crear
+     * objetos. Al llegar al último token (EOF) se queda en él.
+     */
+    public TokenCursor cursor() {
+        return new TokenCursor() {
+            private int pos = 0;
+
+            @Override
+            public TokenType type() {
+                return size == 0 ? TokenType.EOF : TokenBuffer.this.type(pos);
+            }
+
+            @Override
+            public String value() {
+                return size == 0 ? "EOF" : TokenBuffer.this.value(pos);
+            }
+
+            @Override
+            public Symbol symbol() {
+                return TokenBuffer.this.symbol(pos);
+            }
+
+            @Override
+            public int position() {
+                return pos;
+            }
+
+            @Override
+            public int line() {
+                return size == 0 ? 0 : TokenBuffer.this.line(pos);
+            }
+
+            @Override
+            public int column() {
+                return size == 0 ? 0 : TokenBuffer.this.column(pos);
+            }
+
+            @Override
+            public void advance() {
+                if (pos < size - 1) pos++;
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package analizadorsintactico;
+
+import java.util.List;
+
+/**
+ * Vista secuencial (LL(1)) sobre una fuente de tokens.
+ *
+ * Parser y Traductor solo necesitan conocer el token actual y poder avanzar,
+ * de modo que la fuente puede ser una lista ya materializada o un lexer que
+ * entrega los tokens bajo demanda. Al llegar a EOF, advance() no tiene efecto.
+ *
+ * Los lexers no se detienen ante un error léxico: entregan un token ERROR con
+ * el texto no reconocido y siguen. El Parser los informa y los saltea.
+ */
+public interface TokenCursor {
+
+    TokenType type();
+
+    String value();
+
+    void advance();
+
+    /**
+     * Símbolo del token actual, usado para los nombres de atributo. Por
+     * defecto se busca el valor en SymbolTable.SHARED; los cursores que tienen
+     * el texto fuente lo buscan sin crear el String.
+     */
+    default Symbol symbol() {
+        return SymbolTable.SHARED.get(value());
+    }
+
+    /**
+     * Índice del token actual dentro de su fuente, o -1 si el cursor no lo
+     * conoce (por ejemplo, un lexer en streaming).
+     */
+    default int position() {
+        return -1;
+    }
+
+    /**
+     * Línea del token actual (desde 1), o 0 si el cursor no conoce las
+     * posiciones. Se usa solo para informar errores.
+     */
+    default int line() {
+        return 0;
+    }
+
+    /** Columna del token actual (desde 1, en caracteres), o 0 si no se conoce. */
+    default int column() {
+        return 0;
+    }
+
+    /**
+     * Cursor sobre una lista de tokens ya generada (por ejemplo con
+     * Lexer.tokenizeFile()). Si la lista está vacía se comporta como EOF.
+     */
+    static TokenCursor of(List<Token> tokens) {
+        return new TokenCursor() {
+            private int pos = 0;
+            private Token current = (tokens == null || tokens.isEmpty())
+                    ? new Token(TokenType.EOF, "EOF") : tokens.get(0);
+
+            @Override
+            public TokenType type() {
+                return current.getType();
+            }
+
+            @Override
+            public String value() {
+                return current.getValue();
+            }
+
+            @Override
+            public void advance() {
+                if (tokens != null && pos < tokens.size() - 1) {
+                    pos++;
+                    current = tokens.get(pos);
+                }
+            }
+        };
+    }
+}
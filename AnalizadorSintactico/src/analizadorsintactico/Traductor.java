@@ -2,302 +2,334 @@ package analizadorsintactico;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
-
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traductor JSON → XML.
+ *
+ * La validación y la traducción se hacen en una sola pasada: el Parser recorre
+ * la gramática (con su recuperación en Panic Mode) y el Traductor genera el XML
+ * a partir de los eventos que este emite. El XML solo se escribe en disco si el
+ * documento resultó válido; en caso contrario se escriben únicamente los errores.
+ *
+ * La salida se genera en streaming a través de un XmlEmitter (sobre un
+ * XmlBuffer de tamaño fijo), por lo que la memoria usada no crece con el
+ * tamaño del XML. El perfil elige entre salida indentada o compacta, y si
+ * los escalares de un objeto se escriben como atributos de su elemento
+ * (<item ci="1234567" nombre="Julio Pérez">) en lugar de como elementos.
+ *
+ * También se puede traducir desde un DocumentTree ya construido (y válido):
+ * el árbol repite los eventos del Parser, así que el XML es el mismo, y se
+ * puede traducir las veces que haga falta sin volver a analizar el texto.
+ */
 public class Traductor {
-    private final List<Token> tokens;
-    private int pos = 0;
-    private Token current;
-    private final List<String> errors = new ArrayList<>();
-    private final StringBuilder xml = new StringBuilder();
-    private int indent = 0;
+    private static final byte[] ROOT_TAG = Symbol.of("root").tag();
+    private static final byte[] ARRAY_TAG = Symbol.of("array").tag();
+    private static final byte[] ITEM_TAG = Symbol.of("item").tag();
+    // atributo sin nombre válido (tras un error de sintaxis)
+    private static final byte[] KEY_TAG = Symbol.of("").tag();
+    private static final AtomicLong TEMP_COUNTER = new AtomicLong();
+    // los fragmentos se escriben a memoria y suelen ser chicos (p. ej. un registro NDJSON)
+    private static final int FRAGMENT_BUFFER_SIZE = 2048;
+
+    private final TokenCursor cursor;
+    // null al traducir desde un árbol
+    private final Parser parser;
+    private final DocumentTree tree;
+    private final XmlListener listener = new XmlListener();
+    private final XmlEmitter.Profile profile;
+    private DocumentOutline outline;
+    private XmlEmitter xml;
+    private ByteArrayOutputStream memory;
+    private boolean unwrapRootArray = false;
+    // la última llamada a translateAndWrite() pudo escribir sus archivos
+    private boolean written = false;
 
     public Traductor(List<Token> tokens) {
-        this.tokens = tokens;
-        if (tokens == null || tokens.isEmpty()) {
-            this.current = new Token(TokenType.EOF, "EOF");
-        } else {
-            this.current = tokens.get(0);
-        }
-    }
-
-    private void advance() {
-        if (pos < tokens.size() - 1) {
-            pos++;
-            current = tokens.get(pos);
-        }
+        this(TokenCursor.of(tokens));
     }
 
-    private boolean match(TokenType type) {
-        if (current.getType() == type) {
-            advance();
-            return true;
-        }
-        return false;
+    public Traductor(TokenCursor cursor) {
+        this(cursor, XmlEmitter.Profile.INDENTED);
     }
 
-    private boolean check(TokenType type) {
-        return current.getType() == type;
+    public Traductor(TokenCursor cursor, XmlEmitter.Profile profile) {
+        this.cursor = cursor;
+        this.parser = new Parser(cursor, listener);
+        this.tree = null;
+        this.profile = profile;
     }
 
-    private void error(String msg) {
-        errors.add(String.format("Error en token '%s' (tipo %s): %s",
-                current.getValue(), current.getType(), msg));
-    }
-
-    private void synchronize(Set<TokenType> syncSet) {
-        while (current.getType() != TokenType.EOF && !syncSet.contains(current.getType())) {
-            advance();
-        }
+    public Traductor(DocumentTree tree) {
+        this(tree, XmlEmitter.Profile.INDENTED);
     }
 
-    private void pushIndent() {
-        indent++;
+    public Traductor(DocumentTree tree, XmlEmitter.Profile profile) {
+        this.cursor = null;
+        this.parser = null;
+        this.tree = tree;
+        this.profile = profile;
     }
 
-    private void popIndent() {
-        if (indent > 0) indent--;
+    /**
+     * Registra en outline cada objeto y arreglo traducido, con las posiciones
+     * de sus tokens (en índices de token) y el rango de su contenido en el
+     * XML. Requiere un cursor que conozca su posición (ver TokenCursor.position());
+     * no se puede usar al traducir desde un árbol ni con atributos (el contenido
+     * de un elemento empieza recién cuando se cierra su etiqueta de apertura).
+     */
+    void setOutline(DocumentOutline outline) {
+        if (tree != null) throw new IllegalStateException("El índice requiere traducir desde tokens");
+        if (profile.attributes()) throw new IllegalStateException("El índice no admite el perfil " + profile);
+        this.outline = outline;
     }
 
-    private void appendIndent() {
-        for (int i = 0; i < indent; i++) xml.append("\t");
+    /** Ver Parser.setMaxErrors(int). */
+    public void setMaxErrors(int maxErrors) {
+        if (parser != null) parser.setMaxErrors(maxErrors);
     }
 
-    public void translateAndWrite(String outputXmlPath, String outputErrPath) {
-        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        xml.append("<root>\n");
-        pushIndent();
-
-        json();
-
-        popIndent();
-        xml.append("</root>\n");
-
-        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputXmlPath), StandardCharsets.UTF_8))) {
-            w.write(xml.toString());
+    /**
+     * Valida y traduce el documento. Si es válido escribe el XML en
+     * outputXmlPath; si no, escribe los errores en outputErrPath.
+     *
+     * El XML se va escribiendo en un archivo temporal junto al destino, que se
+     * renombra a outputXmlPath solo si el documento resultó válido. Si
+     * outputXmlPath termina en .gz, .zz o .deflate, el XML se comprime en otro
+     * hilo mientras se genera (ver Compression).
+     *
+     * @return false si no se pudo escribir alguno de los archivos de salida
+     */
+    public boolean translateAndWrite(String outputXmlPath, String outputErrPath) {
+        boolean written = true;
+        Path target = Paths.get(outputXmlPath).toAbsolutePath();
+        Path tmp = null;
+        try {
+            tmp = tempSibling(target);
+            try (OutputStream out = Compression.create(tmp, Compression.Format.of(target),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                translate(out);
+            }
+            if (isValid()) {
+                moveReplacing(tmp, target);
+            }
         } catch (IOException e) {
             System.err.println("Error al escribir XML: " + e.getMessage());
+            written = false;
+        } catch (XmlBuffer.WriteFailure e) {
+            // un fallo al escribir durante translate(), p. ej. disco lleno (los de lectura del lexer siguen de largo)
+            System.err.println("Error al escribir XML: " + e.getCause().getMessage());
+            written = false;
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    System.err.println("No se pudo eliminar el temporal " + tmp + ": " + e.getMessage());
+                }
+            }
         }
 
-        if (!errors.isEmpty()) {
+        if (!isValid()) {
             try (BufferedWriter w = new BufferedWriter(new FileWriter(outputErrPath))) {
-                for (String err : errors) {
+                for (String err : getErrors()) {
                     w.write(err);
                     w.write(System.lineSeparator());
                 }
             } catch (IOException e) {
                 System.err.println("Error al escribir archivo de errores: " + e.getMessage());
+                written = false;
             }
         }
+        this.written = written;
+        return written;
     }
 
-    private void json() {
-        element();
-        if (current.getType() != TokenType.EOF) {
-            error("Se esperaba EOF al finalizar JSON");
-            synchronize(Set.of(TokenType.EOF));
-        }
+    /**
+     * Ruta para un temporal en el mismo directorio que target, para que el
+     * renombrado final sea atómico. Se crea con los permisos por defecto
+     * (createTempFile usaría 600).
+     */
+    static Path tempSibling(Path target) {
+        return target.resolveSibling(target.getFileName() + "." + ProcessHandle.current().pid()
+                + "." + TEMP_COUNTER.incrementAndGet() + ".tmp");
     }
 
-    // element → object | array
-    private void element() {
-        if (check(TokenType.L_LLAVE)) {
-            objectAsContent(null); 
-        } else if (check(TokenType.L_CORCHETE)) {
-            arrayAsContent(null);
-        } else {
-            error("Se esperaba un objeto '{' o un arreglo '[' (element)");
-            synchronize(Set.of(TokenType.COMA, TokenType.R_CORCHETE, TokenType.R_LLAVE, TokenType.EOF));
+    static void moveReplacing(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
-    private void objectAsContent(String keyName) {
-        if (!match(TokenType.L_LLAVE)) return;
+    /** Valida y traduce en memoria, sin escribir archivos (ver getXml()). */
+    public void translate() {
+        memory = new ByteArrayOutputStream();
+        translate(memory);
+    }
 
-        if (keyName != null) {
-            appendIndent();
-            String tag = sanitizeXmlName(keyName);
-            xml.append("<").append(tag).append(">").append("\n");
-            pushIndent();
-        }
+    /**
+     * Valida y traduce escribiendo el XML en out a medida que se genera.
+     * El stream no se cierra; si el documento no es válido, lo escrito en out
+     * debe descartarse.
+     */
+    public void translate(OutputStream out) {
+        xml = new XmlEmitter(out, profile);
+        xml.line("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        xml.openTag(ROOT_TAG);
+
+        parse();
 
-        if (check(TokenType.R_LLAVE)) {
-            match(TokenType.R_LLAVE);
+        xml.closeTag(ROOT_TAG);
+        xml.flush();
+    }
+
+    /**
+     * Traduce un arreglo raíz emitiendo solo sus elementos (<item>...</item>),
+     * con la indentación que tendrían dentro de <root><array>. Lo usa
+     * TraductorParalelo para traducir por partes un arreglo muy grande.
+     */
+    void translateFragment(OutputStream out) {
+        translateFragment(out, 1, true);
+    }
+
+    /**
+     * Traduce sin cabecera ni <root>, partiendo del nivel de indentación
+     * indicado. Si unwrapRootArray es true, el arreglo raíz no lleva etiqueta
+     * propia y solo se emiten sus elementos.
+     */
+    void translateFragment(OutputStream out, int baseIndent, boolean unwrapRootArray) {
+        this.unwrapRootArray = unwrapRootArray;
+        xml = new XmlEmitter(new XmlBuffer(out, FRAGMENT_BUFFER_SIZE), profile);
+        xml.setDepth(baseIndent);
+        parse();
+        xml.flush();
+    }
+
+    private void parse() {
+        if (tree != null) {
+            tree.replay(listener);
         } else {
-            attributesList();
-            if (!match(TokenType.R_LLAVE)) {
-                error("Se esperaba '}' al finalizar el objeto");
-                synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.R_CORCHETE, TokenType.EOF));
-                if (check(TokenType.R_LLAVE)) advance();
-            }
+            parser.parse();
         }
+    }
 
-        if (keyName != null) {
-            popIndent();
-            appendIndent();
-            String tag = sanitizeXmlName(keyName);
-            xml.append("</").append(tag).append(">").append("\n");
+    /**
+     * Genera el XML a medida que el Parser reconoce cada construcción.
+     * Un objeto raíz o elemento de arreglo no lleva etiqueta propia; un arreglo
+     * sin nombre se envuelve en <array> y cada uno de sus elementos en <item>.
+     * Las etiquetas de los atributos salen ya codificadas de su Symbol.
+     *
+     * Con atributos, un escalar de un objeto se agrega a la etiqueta de
+     * apertura del objeto (la suya, la de <item> o la de <root>) mientras
+     * esta siga abierta. Como la salida es en streaming, los que aparecen
+     * después de un objeto o arreglo anidado salen como elementos, igual que
+     * sin atributos; también uno con un nombre repetido o reservado (ver
+     * XmlEmitter.attribute()) y, ya cerrada la etiqueta, los que le siguen.
+     */
+    private class XmlListener implements ParseListener {
+        private int nesting = 0;
+
+        @Override
+        public void startObject(Symbol key) {
+            nesting++;
+            if (key != null) xml.openTag(key.tag());
+            enter(false);
+        }
+
+        @Override
+        public void endObject(Symbol key) {
+            nesting--;
+            exit();
+            if (key != null) xml.closeTag(key.tag());
         }
-    }
 
-    private void attributesList() {
-        attribute();
-        while (check(TokenType.COMA)) {
-            match(TokenType.COMA);
-            if (!check(TokenType.LITERAL_CADENA)) {
-                error("Se esperaba STRING (nombre de atributo) después de ','");
-                synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF));
-                if (check(TokenType.R_LLAVE)) return;
+        @Override
+        public void startArray(Symbol key) {
+            // en modo fragmento el arreglo raíz puede no llevar etiqueta
+            boolean root = nesting++ == 0;
+            if (unwrapRootArray && root) {
+                xml.push();
             } else {
-                attribute();
+                xml.openTag(key == null ? ARRAY_TAG : key.tag());
             }
+            enter(true);
         }
-    }
 
-    private void attribute() {
-        String attrName = null;
-        if (check(TokenType.LITERAL_CADENA)) {
-            attrName = current.getValue();
-            match(TokenType.LITERAL_CADENA);
-        } else {
-            error("Se esperaba STRING como nombre del atributo");
-            synchronize(Set.of(TokenType.DOS_PUNTOS, TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF));
-            if (!check(TokenType.DOS_PUNTOS)) return;
+        @Override
+        public void endArray(Symbol key) {
+            boolean root = --nesting == 0;
+            exit();
+            if (unwrapRootArray && root) {
+                xml.pop();
+                return;
+            }
+            xml.closeTag(key == null ? ARRAY_TAG : key.tag());
         }
 
-        if (!match(TokenType.DOS_PUNTOS)) {
-            error("Se esperaba ':' después del nombre del atributo");
-            synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.EOF));
-            return;
+        @Override
+        public void startItem() {
+            xml.openTag(ITEM_TAG);
         }
 
-        TokenType t = current.getType();
-        switch (t) {
-            case L_LLAVE:
-                objectAsContent(attrName);
-                break;
-            case L_CORCHETE:
-                arrayAsContent(attrName);
-                break;
-            case LITERAL_CADENA:
-            case LITERAL_NUM:
-            case PR_TRUE:
-            case PR_FALSE:
-            case PR_NULL:
-                String value = current.getValue();
-                match(t);
-                appendIndent();
-                String tag = sanitizeXmlName(attrName);
-                xml.append("<").append(tag).append(">");
-                xml.append(escapeXml(value));
-                xml.append("</").append(tag).append(">").append("\n");
-                break;
-            default:
-                error("Valor de atributo inválido. Se esperaba objeto, arreglo, string, number, true, false o null");
-                synchronize(Set.of(TokenType.COMA, TokenType.R_LLAVE, TokenType.R_CORCHETE, TokenType.EOF));
+        @Override
+        public void endItem() {
+            xml.closeTag(ITEM_TAG);
         }
-    }
 
-    private void arrayAsContent(String keyName) {
-        if (!match(TokenType.L_CORCHETE)) return;
+        @Override
+        public void scalar(Symbol key, TokenType type, String value) {
+            if (key != null && xml.attribute(key.tag(), value)) return;
+            xml.element(key == null ? KEY_TAG : key.tag(), value);
+        }
 
-    String wrapper = keyName == null ? "array" : keyName;
-    String wrapperTag = sanitizeXmlName(wrapper);
-    appendIndent();
-    xml.append("<").append(wrapperTag).append(">").append("\n");
-        pushIndent();
+        // los eventos llegan con el cursor ya pasado la llave o el corchete
+        private void enter(boolean array) {
+            if (outline != null) outline.enter(cursor.position() - 1, xml.bytesWritten(), xml.depth(), array);
+        }
 
-        // empty array
-        if (check(TokenType.R_CORCHETE)) {
-            match(TokenType.R_CORCHETE);
-        } else {
-            elementListInArray();
-            if (!match(TokenType.R_CORCHETE)) {
-                error("Se esperaba ']' al finalizar el arreglo");
-                synchronize(Set.of(TokenType.COMA, TokenType.R_CORCHETE, TokenType.R_LLAVE, TokenType.EOF));
-                if (check(TokenType.R_CORCHETE)) advance();
-            }
+        private void exit() {
+            if (outline != null) outline.exit(cursor.position() - 1, xml.bytesWritten());
         }
+    }
 
-        popIndent();
-        appendIndent();
-        xml.append("</").append(wrapperTag).append(">").append("\n");
+    // un árbol solo se construye de un documento válido
+    public boolean isValid() {
+        return parser == null || parser.isValid();
     }
 
-    private void elementListInArray() {
-        emitArrayElement();
-        while (check(TokenType.COMA)) {
-            match(TokenType.COMA);
-            if (check(TokenType.R_CORCHETE)) {
-                error("Elemento esperado después de ',' en array");
-                return;
-            }
-            emitArrayElement();
-        }
+    public List<String> getErrors() {
+        return parser == null ? List.of() : parser.getErrors();
     }
 
-    private void emitArrayElement() {
-        appendIndent();
-        xml.append("<item>").append("\n");
-        pushIndent();
-
-        if (check(TokenType.L_LLAVE)) {
-            objectAsContent(null); 
-        } else if (check(TokenType.L_CORCHETE)) {
-            arrayAsContent(null);
-        } else if (check(TokenType.LITERAL_CADENA) || check(TokenType.LITERAL_NUM)
-                || check(TokenType.PR_TRUE) || check(TokenType.PR_FALSE) || check(TokenType.PR_NULL)) {
-            String v = current.getValue();
-            match(current.getType());
-            appendIndent();
-            xml.append(escapeXml(v)).append("\n");
-        } else {
-            error("Se esperaba un elemento válido dentro del array");
-            synchronize(Set.of(TokenType.COMA, TokenType.R_CORCHETE, TokenType.EOF));
-        }
+    public List<Diagnostic> getDiagnostics() {
+        return parser == null ? List.of() : parser.getDiagnostics();
+    }
 
-        popIndent();
-        appendIndent();
-        xml.append("</item>").append("\n");
+    /** true si la traducción se abandonó al llegar al límite de errores. */
+    public boolean isAborted() {
+        return parser != null && parser.isAborted();
     }
 
-    private String escapeXml(String s) {
-        if (s == null) return "";
-    return s.replace("&", "&amp;")
-        .replace("<", "&lt;")
-        .replace(">", "&gt;")
-        .replace("\"", "&quot;")
-        .replace("'", "&apos;");
+    public int getMaxDepth() {
+        return parser == null ? tree.maxDepth() : parser.getMaxDepth();
     }
 
-    /**
-     * Sanitiza un nombre de etiqueta para que sea un nombre XML válido.
-     * Reemplaza caracteres inválidos por '_' y asegura que no comience con dígito.
-     */
-    private String sanitizeXmlName(String s) {
-        if (s == null || s.isEmpty()) return "key";
-        // Escapar y luego normalizar: eliminamos espacios y caracteres no permitidos
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if ((i == 0 && (Character.isLetter(c) || c == '_')) || (i > 0 && (Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.'))) {
-                sb.append(c);
-            } else {
-                sb.append('_');
-            }
-        }
-        // Si el primer carácter no es letra o '_' hacer un prefijo
-        if (!Character.isLetter(sb.charAt(0)) && sb.charAt(0) != '_') {
-            return "k_" + sb.toString();
-        }
-        return sb.toString();
+    /** XML generado por translate(); vacío si se tradujo hacia un stream o archivo. */
+    public String getXml() {
+        return memory == null ? "" : memory.toString(StandardCharsets.UTF_8);
     }
 
-    public List<String> getErrors() {
-        return errors;
+    /** Resultado de la última llamada a translateAndWrite(). */
+    boolean isWritten() {
+        return written;
     }
 
-    public String getXml() {
-        return xml.toString();
+    /** Bytes de XML generados en la última traducción. */
+    public long getXmlBytes() {
+        return xml == null ? 0 : xml.bytesWritten();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,293 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Modo watch: observa un archivo con un WatchService y lo vuelve a traducir
+ * cada vez que se guarda, sin rehacer todo el trabajo.
+ *
+ * Se mantienen en memoria el texto, el XML y un DocumentOutline de la última
+ * traducción válida. Ante un cambio:
+ * 1. se compara con el texto anterior para obtener el rango modificado
+ *    (prefijo y sufijo comunes);
+ * 2. se busca el objeto o arreglo más chico que lo encierra sin tocar sus
+ *    llaves, y solo ese contenedor se vuelve a analizar (léxico y sintáctico)
+ *    y a traducir, con la indentación que tenía;
+ * 3. el XML nuevo de su contenido reemplaza al anterior y el índice se
+ *    actualiza corriendo las posiciones que siguen.
+ *
+ * Si el contenedor deja de ser válido por sí solo (incluido un error léxico),
+ * si el lexer no lo recorre igual que dentro del documento completo (una
+ * cadena que empieza adentro y termina afuera) o si el documento anterior tenía errores,
+ * se traduce el documento completo: el resultado es siempre el mismo que daría
+ * una traducción desde cero.
+ */
+public class TraductorIncremental {
+    // los editores suelen generar varios eventos por guardado: se espera a que terminen
+    static final long DEBOUNCE_MS = 50;
+    // bloque para comparar textos: regionMatches compara cada bloque con instrucciones vectoriales
+    private static final int COMPARE_BLOCK = 4096;
+
+    private final Path file;
+    private final String outputXmlPath;
+    private final String outputErrPath;
+    private final XmlEmitter.Profile profile;
+    private final int maxErrors;
+
+    // estado de la última traducción
+    private String text;
+    // el XML tiene lugar de sobra para reemplazar un fragmento sin copiarlo entero
+    private byte[] xml;
+    private int xmlLength;
+    private DocumentOutline outline;
+    private List<String> errors = List.of();
+    private boolean aborted = false;
+    private int lastReparsed = -1;
+
+    public TraductorIncremental(String filePath, String outputXmlPath, String outputErrPath, XmlEmitter.Profile profile,
+                                int maxErrors) {
+        if (profile.attributes()) throw new IllegalArgumentException("El modo watch no admite el perfil " + profile);
+        this.file = Paths.get(filePath).toAbsolutePath();
+        this.outputXmlPath = outputXmlPath;
+        this.outputErrPath = outputErrPath;
+        this.profile = profile;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Traduce el archivo y queda observándolo hasta que se interrumpa el hilo
+     * (o se termine el proceso). Las salidas se reemplazan de forma atómica,
+     * así que cortar el proceso en cualquier momento no deja archivos a medias.
+     */
+    public void run() throws IOException {
+        Path dir = file.getParent();
+        Path name = file.getFileName();
+        try (WatchService watcher = dir.getFileSystem().newWatchService()) {
+            // se observa el directorio: muchos editores guardan creando un archivo nuevo y renombrándolo
+            dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            refresh();
+            System.out.println("Observando " + file + " (Ctrl+C para terminar)");
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = drain(key, name);
+                WatchKey more;
+                while ((more = watcher.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(more, name);
+                }
+                if (changed) refresh();
+                if (!key.isValid()) throw new IOException("No se puede seguir observando " + dir);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean drain(WatchKey key, Path name) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || name.equals(event.context())) relevant = true;
+        }
+        key.reset();
+        return relevant;
+    }
+
+    // Lee el archivo, lo traduce (incrementalmente si se puede) y escribe las salidas
+    private void refresh() {
+        String current;
+        try {
+            byte[] bytes;
+            try (InputStream in = Compression.open(file)) {
+                bytes = in.readAllBytes();
+            }
+            current = Lexer.normalizeLines(new String(bytes, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            System.out.println("El archivo " + file + " no existe; se espera a que vuelva a crearse.");
+            return;
+        } catch (IOException e) {
+            System.err.println("Error al leer el archivo: " + e.getMessage());
+            return;
+        }
+        if (current.equals(text)) return;
+
+        long start = System.nanoTime();
+        boolean incremental = update(current);
+        boolean written = write();
+        double ms = (System.nanoTime() - start) / 1e6;
+
+        if (!isValid()) {
+            System.out.println("Se encontraron errores sintácticos:");
+            for (String e : errors) {
+                System.out.println("- " + e);
+            }
+            if (aborted) System.out.println(AnalizadorSintactico.abortedMessage(maxErrors));
+            if (written) System.out.println("Los errores se guardaron en: " + outputErrPath);
+        } else if (written) {
+            System.out.printf(Locale.ROOT, "Archivo XML actualizado: %s (%.1f ms, %s)%n", outputXmlPath, ms,
+                    incremental ? "se re-analizaron " + lastReparsed + " caracteres" : "traducción completa");
+        }
+    }
+
+    /**
+     * Pasa al texto nuevo (ya normalizado como lo deja Lexer). Devuelve true
+     * si alcanzó con re-traducir un contenedor y false si se tradujo el
+     * documento completo.
+     */
+    boolean update(String newText) {
+        if (text != null && outline != null) {
+            int prefix = commonPrefix(text, newText);
+            int suffix = commonSuffix(text, newText, prefix);
+            int node = outline.enclosing(prefix, text.length() - suffix);
+            if (node >= 0 && patch(node, newText)) {
+                text = newText;
+                return true;
+            }
+        }
+        translateAll(newText);
+        return false;
+    }
+
+    private void translateAll(String newText) {
+        TokenBuffer tokens = Lexer.ofContent(newText).tokenize();
+        DocumentOutline o = new DocumentOutline();
+        Traductor traductor = new Traductor(tokens.cursor(), profile);
+        traductor.setMaxErrors(maxErrors);
+        traductor.setOutline(o);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        traductor.translate(out);
+
+        text = newText;
+        errors = traductor.getErrors();
+        aborted = traductor.isAborted();
+        lastReparsed = newText.length();
+        if (traductor.isValid()) {
+            o.resolve(tokens);
+            outline = o;
+            xml = out.toByteArray();
+            xmlLength = xml.length;
+        } else {
+            // como en la traducción normal, el XML anterior no se reemplaza
+            outline = null;
+        }
+    }
+
+    // Re-traduce solo el contenedor node; false si hay que traducir el documento completo
+    private boolean patch(int node, String newText) {
+        int textDelta = newText.length() - text.length();
+        int open = outline.open(node);
+        String region = newText.substring(open, outline.close(node) + textDelta + 1);
+
+        TokenBuffer tokens = Lexer.ofContent(region).tokenize();
+        if (!lexedAlone(region, tokens)) return false;
+        DocumentOutline sub = new DocumentOutline();
+        Traductor traductor = new Traductor(tokens.cursor(), profile);
+        // ante el primer error se traduce el documento completo: no hace falta seguir
+        traductor.setMaxErrors(1);
+        traductor.setOutline(sub);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // un arreglo se traduce sin su etiqueta: sus elementos quedan un nivel adentro
+        boolean array = outline.isArray(node);
+        int depth = outline.depth(node);
+        traductor.translateFragment(out, array ? depth - 1 : depth, array);
+        if (!traductor.isValid()) return false;
+        sub.resolve(tokens);
+
+        byte[] fragment = out.toByteArray();
+        int xmlStart = outline.xmlStart(node);
+        int xmlEnd = outline.xmlEnd(node);
+        int xmlDelta = fragment.length - (xmlEnd - xmlStart);
+        if (xmlLength + xmlDelta > xml.length) {
+            xml = Arrays.copyOf(xml, xmlLength + xmlDelta + (xmlLength >> 4));
+        }
+        System.arraycopy(xml, xmlEnd, xml, xmlEnd + xmlDelta, xmlLength - xmlEnd);
+        System.arraycopy(fragment, 0, xml, xmlStart, fragment.length);
+        xmlLength += xmlDelta;
+
+        outline.replace(node, sub, textDelta, xmlDelta);
+        lastReparsed = region.length();
+        return true;
+    }
+
+    /**
+     * true si los tokens de region son los mismos que vería el lexer en el
+     * documento completo:
+     * el análisis llegó hasta la llave final. Eso también descarta una cadena
+     * que no cierra adentro: sin comilla de cierre, Lexer entrega solo la
+     * comilla como token ERROR y saltea el resto, cuando en el documento
+     * completo la cadena seguiría más allá del contenedor.
+     */
+    private static boolean lexedAlone(String region, TokenBuffer tokens) {
+        // el último token es EOF; el anterior debe ser la llave o el corchete de cierre
+        return tokens.size() >= 2 && tokens.end(tokens.size() - 2) == region.length();
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i + COMPARE_BLOCK <= n && a.regionMatches(i, b, i, COMPARE_BLOCK)) i += COMPARE_BLOCK;
+        while (i < n && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    // el sufijo no se superpone con el prefijo ya contado
+    private static int commonSuffix(String a, String b, int prefix) {
+        int n = Math.min(a.length(), b.length()) - prefix;
+        int i = 0;
+        while (i + COMPARE_BLOCK <= n
+                && a.regionMatches(a.length() - i - COMPARE_BLOCK, b, b.length() - i - COMPARE_BLOCK, COMPARE_BLOCK)) {
+            i += COMPARE_BLOCK;
+        }
+        while (i < n && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) i++;
+        return i;
+    }
+
+    private boolean write() {
+        if (isValid()) {
+            Path target = Paths.get(outputXmlPath).toAbsolutePath();
+            Path tmp = Traductor.tempSibling(target);
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    out.write(xml, 0, xmlLength);
+                }
+                Traductor.moveReplacing(tmp, target);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Error al escribir XML: " + e.getMessage());
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // se informó el error original
+                }
+                return false;
+            }
+        }
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(outputErrPath))) {
+            for (String err : errors) {
+                w.write(err);
+                w.write(System.lineSeparator());
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error al escribir archivo de errores: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /** XML de la última traducción válida (null si todavía no hubo ninguna). */
+    byte[] getXml() {
+        return xml == null ? null : Arrays.copyOf(xml, xmlLength);
+    }
+}
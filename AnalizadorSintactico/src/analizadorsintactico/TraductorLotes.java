@@ -0,0 +1,233 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.Stream;
+
+/**
+ * Modo por lotes: traduce todos los archivos de uno o más directorios (o que
+ * coincidan con un patrón glob) de forma concurrente.
+ *
+ * Cada archivo se procesa en su propio hilo virtual; un semáforo limita a
+ * 'workers' las traducciones simultáneas, que son las que ocupan CPU. Cada
+ * entrada entrada.json genera su propio entrada.xml y, si tiene errores,
+ * entrada.err, dentro del directorio de salida (manteniendo la ruta relativa)
+ * o junto a la entrada si no se indicó uno. Si dos entradas irían a la misma
+ * salida (por ejemplo, a/d.json y b/d.json con el mismo directorio de
+ * salida, o d.json y d.json5) no se traduce nada. Una entrada comprimida
+ * (entrada.json.gz) genera su XML comprimido igual (entrada.xml.gz). Al final
+ * se imprime un resumen.
+ *
+ * Con una TranslationCache, los archivos cuyo contenido ya se tradujo (por
+ * ejemplo, en el lote de la noche anterior) no se analizan: se copia el
+ * resultado guardado.
+ */
+public class TraductorLotes {
+    private final List<String> inputs;
+    private final Path outputDir;
+    private final int workers;
+    private final String lexerMode;
+    private final XmlEmitter.Profile profile;
+    private final boolean metrics;
+    private final int maxErrors;
+    private final TranslationCache cache;
+
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicInteger invalid = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    public TraductorLotes(List<String> inputs, Path outputDir, int workers, String lexerMode, XmlEmitter.Profile profile,
+                          boolean metrics, int maxErrors) {
+        this(inputs, outputDir, workers, lexerMode, profile, metrics, maxErrors, null);
+    }
+
+    public TraductorLotes(List<String> inputs, Path outputDir, int workers, String lexerMode, XmlEmitter.Profile profile,
+                          boolean metrics, int maxErrors, TranslationCache cache) {
+        if (workers < 1) throw new IllegalArgumentException("workers debe ser >= 1");
+        this.inputs = inputs;
+        this.outputDir = outputDir;
+        this.workers = workers;
+        this.lexerMode = lexerMode;
+        this.profile = profile;
+        this.metrics = metrics;
+        this.maxErrors = maxErrors;
+        this.cache = cache;
+    }
+
+    /** Archivo de entrada y los archivos de salida que le corresponden. */
+    private record Job(Path file, Path xmlOut, Path errOut) { }
+
+    /**
+     * Procesa todos los archivos y devuelve true si no hubo fallos.
+     *
+     * @throws IllegalArgumentException si dos entradas tienen la misma salida
+     */
+    public boolean run() throws IOException {
+        long start = System.nanoTime();
+        Semaphore permits = new Semaphore(workers);
+        List<Job> jobs = plan();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Job job : jobs) {
+                executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        translateOne(job);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } // close() espera a que terminen todas las tareas
+
+        printSummary(System.nanoTime() - start);
+        return invalid.get() == 0 && failed.get() == 0;
+    }
+
+    /**
+     * Expande todas las entradas y calcula sus salidas antes de traducir
+     * nada. Un mismo archivo que aparece en varias entradas se traduce una
+     * sola vez; dos archivos distintos con la misma salida (el XML o el de
+     * errores) son un error.
+     */
+    private List<Job> plan() throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        Set<Path> seen = new HashSet<>();
+        // salida normalizada → archivo que la genera
+        Map<Path, Path> owners = new HashMap<>();
+        for (String input : inputs) {
+            for (Map.Entry<Path, Path> e : expand(input).entrySet()) {
+                Path file = e.getKey();
+                if (!seen.add(file.toAbsolutePath().normalize())) continue;
+                Job job = job(file, e.getValue());
+                // datos.json y datos.json.gz van a XML distintos pero al mismo .err
+                for (Path out : List.of(job.xmlOut(), job.errOut())) {
+                    Path previous = owners.putIfAbsent(out.toAbsolutePath().normalize(), file);
+                    if (previous != null && !previous.equals(file)) {
+                        throw new IllegalArgumentException("Las entradas " + previous + " y " + file
+                                + " se escribirían en la misma salida " + out + "; no se tradujo ningún archivo");
+                    }
+                }
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    private Job job(Path file, Path relative) {
+        Path base = outputDir == null ? file : outputDir.resolve(relative);
+        // datos.json.gz da datos.xml.gz: la salida se comprime con el formato de la entrada
+        Compression.Format format = Compression.Format.of(base);
+        String name = Compression.stripExtension(base.getFileName().toString());
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return new Job(file, base.resolveSibling(stem + ".xml" + format.extension()), base.resolveSibling(stem + ".err"));
+    }
+
+    private void translateOne(Job job) {
+        files.incrementAndGet();
+        Path file = job.file();
+        Path xmlOut = job.xmlOut();
+        Path errOut = job.errOut();
+
+        try {
+            bytesIn.addAndGet(Files.size(file));
+            Path parent = xmlOut.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+
+            Metrics documentMetrics = metrics ? new Metrics(file.toString()) : Metrics.NONE;
+            TranslationCache.Result result = cache != null
+                    ? AnalizadorSintactico.translate(cache, file.toString(), lexerMode, profile,
+                            xmlOut.toString(), errOut.toString(), documentMetrics, maxErrors, null)
+                    : TranslationCache.Result.of(AnalizadorSintactico.translate(file.toString(), lexerMode, profile,
+                            xmlOut.toString(), errOut.toString(), documentMetrics, maxErrors));
+            if (!result.written()) {
+                // el motivo ya se imprimió al intentar escribir
+                failed.incrementAndGet();
+                System.err.println(file + ": no se pudo escribir la salida");
+            } else if (!result.valid()) {
+                invalid.incrementAndGet();
+                System.err.println(file + ": " + result.errors().size() + " error(es)"
+                        + (result.aborted() ? " (análisis detenido)" : "") + ", ver " + errOut);
+            } else {
+                bytesOut.addAndGet(result.xmlBytes());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            failed.incrementAndGet();
+            System.err.println(file + ": error de E/S: " + e.getMessage());
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.println(file + ": " + e);
+        }
+    }
+
+    /**
+     * Resuelve una entrada a la lista de archivos que representa, junto con la
+     * ruta relativa que se usa para ubicar su salida. Un directorio aporta sus
+     * archivos .json (recursivamente); un patrón glob, los que coincidan.
+     */
+    private static Map<Path, Path> expand(String input) throws IOException {
+        Map<Path, Path> result = new LinkedHashMap<>();
+        if (hasGlob(input)) {
+            // el directorio base es la parte del patrón anterior al primer comodín
+            String normalized = input.replace('\\', '/');
+            int firstGlob = indexOfGlob(normalized);
+            int slash = normalized.lastIndexOf('/', firstGlob);
+            Path root = slash < 0 ? Paths.get(".") : Paths.get(normalized.substring(0, slash + 1));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized.substring(slash + 1));
+            try (Stream<Path> walk = Files.walk(root)) {
+                walk.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(root.relativize(p)))
+                    .sorted()
+                    .forEach(p -> result.put(p, root.relativize(p)));
+            }
+            return result;
+        }
+
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(Files::isRegularFile)
+                    .filter(p -> Compression.stripExtension(p.getFileName().toString()).endsWith(".json"))
+                    .sorted()
+                    .forEach(p -> result.put(p, path.relativize(p)));
+            }
+        } else {
+            result.put(path, path.getFileName());
+        }
+        return result;
+    }
+
+    private static boolean hasGlob(String s) {
+        return indexOfGlob(s) >= 0;
+    }
+
+    private static int indexOfGlob(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if ("*?[{".indexOf(s.charAt(i)) >= 0) return i;
+        }
+        return -1;
+    }
+
+    private void printSummary(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos / 1e9, 1e-9);
+        double mb = bytesIn.get() / (1024.0 * 1024.0);
+        System.out.println("Resumen del lote:");
+        System.out.println("  Archivos procesados: " + files.get());
+        System.out.println("  Archivos con errores sintácticos: " + invalid.get());
+        System.out.println("  Archivos con fallos de E/S: " + failed.get());
+        System.out.printf(Locale.ROOT, "  Bytes leídos: %d (%.2f MB)%n", bytesIn.get(), mb);
+        System.out.printf(Locale.ROOT, "  Bytes XML escritos: %d%n", bytesOut.get());
+        if (cache != null) {
+            System.out.printf(Locale.ROOT, "  Tomados de la caché: %d (caché: %.2f MB)%n",
+                    cache.hits(), cache.size() / (1024.0 * 1024.0));
+        }
+        System.out.printf(Locale.ROOT, "  Tiempo: %.3f s (%.2f MB/s, %.1f archivos/s)%n",
+                seconds, mb / seconds, files.get() / seconds);
+    }
+}
@@ -0,0 +1,266 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Modo JSON Lines (NDJSON): cada línea de la entrada es un documento JSON
+ * independiente y la entrada puede no terminar nunca (por ejemplo, stdin).
+ *
+ * El hilo principal lee las líneas y las envía en lotes a un pool de
+ * 'workers' hilos que las traducen; un hilo escritor toma los resultados en
+ * el orden de entrada y los escribe en la salida a medida que están listos,
+ * cada uno dentro de <record line="N">. Un lote se envía al llenarse o en
+ * cuanto no hay más entrada disponible, así un stream lento no espera a
+ * completar el lote. Una cola acotada entre ambos limita cuántos
+ * registros hay en vuelo, así que la memoria no depende del largo del stream.
+ *
+ * La entrada puede estar comprimida (también stdin) y la salida se comprime
+ * si su nombre termina en .gz, .zz o .deflate (ver Compression).
+ *
+ * Un registro inválido no detiene el proceso: se omite del XML y sus errores
+ * se escriben en el archivo de errores, con la línea y la columna de la
+ * entrada donde se encontraron.
+ */
+public class TraductorNdjson {
+    /** Nombre de entrada o de salida que representa stdin / stdout. */
+    public static final String STANDARD_STREAM = "-";
+
+    private static final byte[] HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>\n"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FOOTER = "</root>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RECORD_END = "\t</record>\n".getBytes(StandardCharsets.UTF_8);
+
+    // límites de un lote: pocas líneas cortas por tarea amortizan el costo de pasarlas entre hilos
+    private static final int BATCH_LINES = 256;
+    private static final int BATCH_CHARS = 64 * 1024;
+
+    // marca de fin de la entrada para el hilo escritor
+    private static final Future<List<Result>> END = CompletableFuture.completedFuture(null);
+
+    private final String input;
+    private final String outputXmlPath;
+    private final String outputErrPath;
+    private final int workers;
+    private final boolean metrics;
+    private final int maxErrors;
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private volatile IOException writeFailure;
+
+    /**
+     * Con metrics, cada registro se mide como un documento (ver Metrics).
+     * maxErrors es el límite de errores de cada registro.
+     */
+    public TraductorNdjson(String input, String outputXmlPath, String outputErrPath, int workers, boolean metrics,
+                           int maxErrors) {
+        if (workers < 1) throw new IllegalArgumentException("workers debe ser >= 1");
+        this.input = input;
+        this.outputXmlPath = outputXmlPath;
+        this.outputErrPath = outputErrPath;
+        this.workers = workers;
+        this.metrics = metrics;
+        this.maxErrors = maxErrors;
+    }
+
+    /** Resultado de traducir una línea: su XML o sus errores. */
+    private record Result(long line, byte[] xml, List<String> errors) { }
+
+    /**
+     * Procesa toda la entrada y devuelve true si todos los registros fueron
+     * válidos. Lanza IOException si no se pudo leer la entrada o escribir la
+     * salida.
+     */
+    public boolean run() throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<Future<List<Result>>> pending = new ArrayBlockingQueue<>(workers * 4);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+        try (BufferedReader reader = openInput();
+             OutputStream xmlOut = openOutput()) {
+            Thread writer = new Thread(() -> writeAll(pending, xmlOut), "ndjson-writer");
+            writer.start();
+            try {
+                String line;
+                long lineNumber = 0;
+                List<String> batch = new ArrayList<>();
+                long firstLine = 1;
+                int batchChars = 0;
+                while (writeFailure == null && (line = reader.readLine()) != null) {
+                    lineNumber++;
+                    bytesIn.addAndGet(line.length() + 1);
+                    if (batch.isEmpty()) firstLine = lineNumber;
+                    batch.add(line);
+                    batchChars += line.length();
+                    if (batch.size() >= BATCH_LINES || batchChars >= BATCH_CHARS || !reader.ready()) {
+                        submit(pool, pending, firstLine, batch);
+                        batch = new ArrayList<>();
+                        batchChars = 0;
+                    }
+                }
+                if (!batch.isEmpty()) submit(pool, pending, firstLine, batch);
+                pending.put(END);
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writer.interrupt();
+                throw new InterruptedIOException("Lectura interrumpida");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (writeFailure != null) throw writeFailure;
+        printSummary(System.nanoTime() - start);
+        return invalid.get() == 0;
+    }
+
+    private void submit(ExecutorService pool, BlockingQueue<Future<List<Result>>> pending,
+                        long firstLine, List<String> lines) throws InterruptedException {
+        pending.put(pool.submit(() -> {
+            List<Result> results = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                if (!lines.get(i).isBlank()) results.add(translate(firstLine + i, lines.get(i)));
+            }
+            return results;
+        }));
+    }
+
+    private Result translate(long line, String text) {
+        try {
+            Metrics m = metrics ? new Metrics(input + ":" + line) : Metrics.NONE;
+            m.bytesRead(text.length());
+            int firstLine = (int) Math.min(line, Integer.MAX_VALUE);
+            m.begin(Metrics.Phase.LEX);
+            TokenBuffer tokens = Lexer.ofContent(text, firstLine).tokenize();
+            m.end(Metrics.Phase.LEX);
+            m.countTokens(tokens);
+            Traductor traductor = new Traductor(tokens.cursor());
+            traductor.setMaxErrors(maxErrors);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            m.begin(Metrics.Phase.TRANSLATE);
+            traductor.translateFragment(out, 2, false);
+            m.end(Metrics.Phase.TRANSLATE);
+            m.finish(traductor);
+            if (!traductor.isValid()) return new Result(line, null, traductor.getErrors());
+            return new Result(line, out.toByteArray(), List.of());
+        } catch (RuntimeException e) {
+            // una falla inesperada se informa como error de ese registro
+            return new Result(line, null, List.of("Línea " + line + ": Error interno: " + e));
+        }
+    }
+
+    /**
+     * Hilo escritor: escribe los registros en orden de entrada. Si falla la
+     * escritura sigue vaciando la cola (sin escribir) para no bloquear al lector.
+     */
+    private void writeAll(BlockingQueue<Future<List<Result>>> pending, OutputStream xmlOut) {
+        BufferedWriter errOut = null;
+        long written = 0;
+        try {
+            xmlOut.write(HEADER);
+            written = HEADER.length;
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+        try {
+            while (true) {
+                Future<List<Result>> next = pending.take();
+                if (next == END) break;
+                if (writeFailure != null) continue;
+                try {
+                    for (Result result : next.get()) {
+                        records.incrementAndGet();
+                        if (result.xml() != null) {
+                            byte[] start = ("\t<record line=\"" + result.line() + "\">\n").getBytes(StandardCharsets.UTF_8);
+                            xmlOut.write(start);
+                            xmlOut.write(result.xml());
+                            xmlOut.write(RECORD_END);
+                            written += start.length + result.xml().length + RECORD_END.length;
+                        } else {
+                            invalid.incrementAndGet();
+                            if (errOut == null) errOut = Files.newBufferedWriter(Paths.get(outputErrPath), StandardCharsets.UTF_8);
+                            for (String err : result.errors()) {
+                                errOut.write(err);
+                                errOut.write(System.lineSeparator());
+                            }
+                        }
+                    }
+                    // sin más resultados listos: vaciar para que el consumidor los vea ya
+                    Future<List<Result>> head = pending.peek();
+                    if (head == null || !head.isDone()) {
+                        xmlOut.flush();
+                        if (errOut != null) errOut.flush();
+                    }
+                } catch (IOException e) {
+                    writeFailure = e;
+                } catch (ExecutionException e) {
+                    writeFailure = new IOException("Fallo inesperado al traducir un registro", e.getCause());
+                }
+            }
+            if (writeFailure == null) {
+                xmlOut.write(FOOTER);
+                xmlOut.flush();
+                bytesOut.set(written + FOOTER.length);
+            }
+        } catch (IOException e) {
+            writeFailure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (errOut != null) {
+                try {
+                    errOut.close();
+                } catch (IOException e) {
+                    if (writeFailure == null) writeFailure = e;
+                }
+            }
+        }
+    }
+
+    private BufferedReader openInput() throws IOException {
+        InputStream in = STANDARD_STREAM.equals(input) ? Compression.open(System.in) : Compression.open(Paths.get(input));
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private OutputStream openOutput() throws IOException {
+        if (STANDARD_STREAM.equals(outputXmlPath)) {
+            // no cerramos System.out
+            return new BufferedOutputStream(new FilterOutputStream(System.out) {
+                // FilterOutputStream escribiría de a un byte en el PrintStream sincronizado
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+        }
+        Path path = Paths.get(outputXmlPath);
+        return new BufferedOutputStream(Compression.create(path, Compression.Format.of(path)));
+    }
+
+    private void printSummary(long elapsedNanos) {
+        // si el XML va a stdout, el resumen va a stderr para no mezclarse
+        PrintStream console = STANDARD_STREAM.equals(outputXmlPath) ? System.err : System.out;
+        double seconds = Math.max(elapsedNanos / 1e9, 1e-9);
+        double mb = bytesIn.get() / (1024.0 * 1024.0);
+        console.println("Resumen NDJSON:");
+        console.println("  Registros procesados: " + records.get());
+        console.println("  Registros con errores: " + invalid.get() + (invalid.get() > 0 ? " (ver " + outputErrPath + ")" : ""));
+        console.printf(Locale.ROOT, "  Caracteres leídos: %d (%.2f MB)%n", bytesIn.get(), mb);
+        console.printf(Locale.ROOT, "  Bytes XML escritos: %d%n", bytesOut.get());
+        console.printf(Locale.ROOT, "  Tiempo: %.3f s (%.2f MB/s, %.1f registros/s)%n",
+                seconds, mb / seconds, records.get() / seconds);
+    }
+}
@@ -0,0 +1,278 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Traducción en paralelo de un documento cuya raíz es un arreglo muy grande
+ * ([ {...}, {...}, ... ]).
+ *
+ * Primero se recorre el archivo a nivel de bytes contando llaves y corchetes
+ * (ignorando lo que está entre comillas, con sus \" escapados) para ubicar las comas que separan
+ * los elementos del arreglo raíz. Con esas posiciones se arman porciones de
+ * varios elementos que se traducen en paralelo con fork/join; los fragmentos
+ * de <item> resultantes se escriben en el orden original.
+ *
+ * Si el documento no tiene esa forma o alguna porción tiene errores, se
+ * descarta lo generado y se traduce de forma secuencial, de modo que los
+ * errores informados son exactamente los del Traductor. Un archivo comprimido
+ * no se puede leer por posición y también se traduce de forma secuencial.
+ */
+public class TraductorParalelo {
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    private static final byte[] HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>\n\t<array>\n"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FOOTER = "\t</array>\n</root>\n".getBytes(StandardCharsets.UTF_8);
+
+    private final String filePath;
+    private final int parallelism;
+    private final Metrics metrics;
+    private final int maxErrors;
+    private Traductor sequential;
+    private long xmlBytes;
+
+    public TraductorParalelo(String filePath, int parallelism) {
+        this(filePath, parallelism, Metrics.NONE);
+    }
+
+    /**
+     * Si la traducción es en paralelo solo se miden bytes leídos y escritos y
+     * el tiempo total; si recae en la secuencial, las métricas son las de esta.
+     */
+    public TraductorParalelo(String filePath, int parallelism, Metrics metrics) {
+        this(filePath, parallelism, metrics, Parser.DEFAULT_MAX_ERRORS);
+    }
+
+    /** maxErrors se aplica a la traducción secuencial (ver Parser.setMaxErrors). */
+    public TraductorParalelo(String filePath, int parallelism, Metrics metrics, int maxErrors) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism debe ser >= 1");
+        this.filePath = filePath;
+        this.parallelism = parallelism;
+        this.metrics = metrics;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Igual que Traductor.translateAndWrite: escribe el XML si el documento es
+     * válido y los errores en caso contrario.
+     *
+     * @return false si no se pudo escribir alguno de los archivos de salida
+     */
+    public boolean translateAndWrite(String outputXmlPath, String outputErrPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            // las porciones se leen por posición: un archivo comprimido se traduce de forma secuencial
+            long[] separators = Compression.detect(Paths.get(filePath)) == Compression.Format.NONE ? split(channel) : null;
+            if (separators != null) {
+                Path target = Paths.get(outputXmlPath).toAbsolutePath();
+                Path tmp = Traductor.tempSibling(target);
+                try {
+                    boolean translated;
+                    try (OutputStream out = new BufferedOutputStream(Compression.create(tmp, Compression.Format.of(target),
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+                        translated = translateChunks(channel, separators, out);
+                    }
+                    if (translated) {
+                        Traductor.moveReplacing(tmp, target);
+                        metrics.bytesRead(channel.size());
+                        metrics.finish(0, -1, xmlBytes);
+                        return true;
+                    }
+                } catch (IOException e) {
+                    // la entrada se lee con el canal y desde las porciones (UncheckedIOException): esto es la salida
+                    System.err.println("Error al escribir XML: " + e.getMessage());
+                    return false;
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+
+        // no es un arreglo raíz divisible, o tiene errores: traducción secuencial
+        sequential = AnalizadorSintactico.translate(filePath, null, XmlEmitter.Profile.INDENTED,
+                outputXmlPath, outputErrPath, metrics, maxErrors);
+        xmlBytes = sequential.getXmlBytes();
+        return sequential.isWritten();
+    }
+
+    public boolean isValid() {
+        return sequential == null || sequential.isValid();
+    }
+
+    public List<String> getErrors() {
+        return sequential == null ? List.of() : sequential.getErrors();
+    }
+
+    public boolean isAborted() {
+        return sequential != null && sequential.isAborted();
+    }
+
+    public long getXmlBytes() {
+        return xmlBytes;
+    }
+
+    /**
+     * Devuelve las posiciones que delimitan las porciones: la del '[' raíz,
+     * algunas comas de primer nivel (separadas al menos por el tamaño de
+     * porción) y la del ']' final. Devuelve null si la raíz no es un arreglo
+     * no vacío seguido solo de espacios, o si llaves y comillas no cierran.
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, size / (parallelism * 8L));
+        List<Long> separators = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        int depth = 0;
+        boolean inString = false;
+        // el byte anterior dentro de la cadena fue una barra que empieza un escape
+        boolean escape = false;
+        boolean closed = false;
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) break;
+            byte[] bytes = buffer.array();
+            for (int k = 0; k < n; k++) {
+                byte b = bytes[k];
+                long offset = position + k;
+                if (closed) {
+                    if (!isAsciiWhitespace(b)) return null;
+                } else if (inString) {
+                    if (escape) escape = false;
+                    else if (b == '\\') escape = true;
+                    else if (b == '"') inString = false;
+                } else if (depth == 0) {
+                    if (b == '[') {
+                        depth = 1;
+                        separators.add(offset);
+                    } else if (!isAsciiWhitespace(b)) {
+                        return null;
+                    }
+                } else {
+                    switch (b) {
+                        case '"' -> inString = true;
+                        case '{', '[' -> depth++;
+                        case '}', ']' -> {
+                            if (--depth == 0) {
+                                closed = true;
+                                separators.add(offset);
+                            }
+                        }
+                        case ',' -> {
+                            if (depth == 1 && offset - separators.get(separators.size() - 1) >= chunkSize) {
+                                separators.add(offset);
+                            }
+                        }
+                        default -> { }
+                    }
+                }
+            }
+            position += n;
+        }
+        if (!closed || inString) return null;
+
+        long[] result = new long[separators.size()];
+        for (int i = 0; i < result.length; i++) result[i] = separators.get(i);
+        // arreglo vacío: no hay nada que paralelizar
+        if (result.length == 2 && isBlank(channel, result[0] + 1, result[1])) return null;
+        return result;
+    }
+
+    private static boolean isBlank(FileChannel channel, long from, long to) throws IOException {
+        for (byte b : read(channel, from, to)) {
+            if (!isAsciiWhitespace(b)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAsciiWhitespace(byte b) {
+        return b >= 0 && Character.isWhitespace(b);
+    }
+
+    /**
+     * Traduce las porciones en paralelo y escribe sus fragmentos en orden.
+     * Solo se mantienen en vuelo unas pocas porciones por hilo, para que la
+     * memoria no dependa del tamaño del archivo.
+     */
+    private boolean translateChunks(FileChannel channel, long[] separators, OutputStream out) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            out.write(HEADER);
+            long written = HEADER.length;
+            int chunks = separators.length - 1;
+            int window = parallelism * 2;
+            Deque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+            int next = 0;
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < window) {
+                    pending.add(pool.submit(new ChunkTask(channel, separators[next] + 1, separators[next + 1])));
+                    next++;
+                }
+                byte[] fragment = pending.poll().join();
+                if (fragment == null) {
+                    pending.forEach(t -> t.cancel(true));
+                    return false;
+                }
+                out.write(fragment);
+                written += fragment.length;
+            }
+            out.write(FOOTER);
+            xmlBytes = written + FOOTER.length;
+            return true;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long from, long to) throws IOException {
+        long length = to - from;
+        if (length > Integer.MAX_VALUE - 8) throw new IOException("Porción demasiado grande: " + length + " bytes");
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) throw new EOFException();
+        }
+        return buffer.array();
+    }
+
+    /** Traduce los elementos entre dos separadores; null si no son válidos o no hay ninguno. */
+    @SuppressWarnings("serial") // nunca se serializa
+    private static class ChunkTask extends RecursiveTask<byte[]> {
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+
+        ChunkTask(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected byte[] compute() {
+            try {
+                String elements = new String(read(channel, from, to), StandardCharsets.UTF_8);
+                // sin elementos entre dos separadores (p. ej. una coma final antes de ']'), "[" + "]"
+                // sería un arreglo vacío válido: se deja el error a la traducción secuencial
+                if (elements.isBlank()) return null;
+                // Lexer lee por líneas: normalizamos los saltos igual que él
+                if (elements.indexOf('\r') >= 0) elements = elements.replace("\r\n", "\n").replace('\r', '\n');
+                Traductor traductor = new Traductor(Lexer.ofContent("[" + elements + "]").tokenize().cursor());
+                // con un error la porción ya se descarta: no hace falta seguir analizándola
+                traductor.setMaxErrors(1);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                traductor.translateFragment(out);
+                return traductor.isValid() ? out.toByteArray() : null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package analizadorsintactico;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Modo servidor: mantiene una JVM residente que traduce documentos a pedido
+ * por HTTP, para no pagar el arranque de la JVM (ni el JIT en frío) por cada
+ * archivo.
+ *
+ * Rutas:
+ *     POST /translate             el cuerpo es el documento JSON.
+ *     GET  /translate?path=ruta   traduce un archivo del servidor, relativo
+ *                                 al directorio indicado con --root (sin
+ *                                 --root esta forma está deshabilitada).
+ *     GET  /health                responde "ok" mientras el servidor acepta pedidos.
+ *     GET  /metrics               línea de resumen de MetricsRegistry (con --metrics).
+ *
+ * Un documento válido se responde con 200 y el XML; uno inválido con 422 y
+ * sus errores, uno por línea, en texto plano (si el análisis se detuvo al
+ * llegar a maxErrors, la última línea lo indica). Con ?compact=1 el XML se
+ * escribe con el perfil compacto y con ?attributes=1 los escalares van como
+ * atributos (ver XmlEmitter.Profile). Con ?validate=1 el documento solo se valida
+ * (ver Validator), sin crear tokens ni XML: se responde 200 si es válido y
+ * 422 con la posición del primer error si no.
+ *
+ * Cada conexión se atiende en su propio hilo virtual; un semáforo limita a
+ * 'workers' las traducciones simultáneas. Un pedido que no consigue lugar en
+ * QUEUE_TIMEOUT_MS se rechaza con 503 (y Retry-After), así una ráfaga no
+ * acumula pedidos sin límite. El documento (el cuerpo o el archivo pedido)
+ * se lee recién al obtener el permiso y este se conserva hasta terminar de
+ * responder, de modo que solo 'workers' documentos (de hasta MAX_BODY_BYTES,
+ * ya descomprimidos; los más grandes se rechazan con 413) están en memoria a
+ * la vez. El XML no se arma en memoria: el documento se valida primero (ver
+ * Validator) y, si es válido, se traduce directamente sobre la respuesta.
+ *
+ * stop() (también desde un shutdown hook, ante SIGTERM o Ctrl+C) deja de
+ * aceptar pedidos, espera hasta GRACE_SECONDS a que terminen los que están
+ * en curso y luego imprime un resumen.
+ */
+public class TraductorServidor {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+    static final long QUEUE_TIMEOUT_MS = 10_000;
+    static final int GRACE_SECONDS = 30;
+
+    private static final String XML_TYPE = "application/xml; charset=utf-8";
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+
+    private final int port;
+    private final Path root;
+    private final int workers;
+    private final XmlEmitter.Profile profile;
+    private final boolean metrics;
+    private final int maxErrors;
+
+    private final Semaphore permits;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicBoolean stopping = new AtomicBoolean();
+    // intercambios que están en un handler; stop() espera a que lleguen a 0
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean accepting = true;
+    // root con los enlaces simbólicos resueltos (se calcula en start())
+    private Path realRoot;
+    private HttpServer server;
+    private ExecutorService executor;
+    private long startNanos;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * @param root directorio desde el que se pueden pedir archivos por ruta,
+     *             o null para aceptar solo documentos en el cuerpo
+     */
+    public TraductorServidor(int port, Path root, int workers, XmlEmitter.Profile profile, boolean metrics,
+                             int maxErrors) {
+        if (workers < 1) throw new IllegalArgumentException("workers debe ser >= 1");
+        if (port < 0 || port > 65535) throw new IllegalArgumentException("Puerto inválido: " + port);
+        this.port = port;
+        this.root = root == null ? null : root.toAbsolutePath().normalize();
+        this.workers = workers;
+        this.profile = profile;
+        this.metrics = metrics;
+        this.maxErrors = maxErrors;
+        this.permits = new Semaphore(workers, true);
+    }
+
+    /**
+     * Arranca el servidor en la interfaz local (loopback) y devuelve el
+     * puerto en el que escucha (útil con puerto 0).
+     */
+    public int start() throws IOException {
+        if (root != null) realRoot = root.toRealPath();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/translate", tracked(this::handleTranslate));
+        server.createContext("/health", tracked(this::handleHealth));
+        server.createContext("/metrics", tracked(this::handleMetrics));
+        startNanos = System.nanoTime();
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /** Arranca el servidor y bloquea hasta que se detenga (ver stop()). */
+    public void run() throws IOException {
+        int boundPort = start();
+        Thread hook = new Thread(this::stop, "servidor-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+        System.out.println("Servidor escuchando en http://" + InetAddress.getLoopbackAddress().getHostAddress()
+                + ":" + boundPort + " (" + workers + " traducciones simultáneas"
+                + (root == null ? "" : ", archivos desde " + root) + ")");
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+        }
+    }
+
+    /**
+     * Detención ordenada: rechaza los pedidos nuevos, espera a los que están
+     * en curso (hasta GRACE_SECONDS) e imprime el resumen. Se puede llamar
+     * varias veces; solo la primera tiene efecto.
+     */
+    public void stop() {
+        if (server == null || !stopping.compareAndSet(false, true)) return;
+        accepting = false;
+        // HttpServer.stop(n) espera siempre los n segundos completos aunque no haya
+        // pedidos: se espera aquí a que terminen los que están en curso y se cierra sin demora
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(GRACE_SECONDS);
+        try {
+            synchronized (inFlight) {
+                long remaining;
+                while (inFlight.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+        executor.shutdown();
+        try {
+            long remaining = Math.max(deadline - System.nanoTime(), 0);
+            if (!executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        printSummary(System.nanoTime() - startNanos);
+        if (metrics) System.err.println(MetricsRegistry.get().getSummaryLine());
+        stopped.countDown();
+    }
+
+    // Cuenta el intercambio como en curso mientras corre el handler
+    private HttpHandler tracked(HttpHandler handler) {
+        return exchange -> {
+            inFlight.incrementAndGet();
+            try {
+                handler.handle(exchange);
+            } finally {
+                if (inFlight.decrementAndGet() == 0) {
+                    synchronized (inFlight) {
+                        inFlight.notifyAll();
+                    }
+                }
+            }
+        };
+    }
+
+    private void handleTranslate(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                translate(exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (UncheckedIOException e) {
+                respondError(exchange, e.getCause());
+            } catch (IOException e) {
+                // p. ej. el archivo pedido no se pudo leer
+                respondError(exchange, e);
+            }
+        }
+    }
+
+    private void translate(HttpExchange exchange) throws IOException, InterruptedException {
+        String method = exchange.getRequestMethod();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String path = query.get("path");
+        boolean fromBody = "POST".equals(method) && path == null;
+        if (!fromBody && !"GET".equals(method) && !"POST".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, POST");
+            respond(exchange, 405, TEXT_TYPE, "Método no permitido: " + method);
+            return;
+        }
+        if (!fromBody && path == null) {
+            respond(exchange, 400, TEXT_TYPE, "Falta el parámetro path (o enviar el documento con POST)");
+            return;
+        }
+        if (!accepting) {
+            respond(exchange, 503, TEXT_TYPE, "El servidor se está deteniendo");
+            return;
+        }
+
+        Path file = null;
+        if (!fromBody) {
+            file = resolve(path);
+            if (file == null) {
+                respond(exchange, 403, TEXT_TYPE, root == null
+                        ? "Traducción por ruta deshabilitada (iniciar con --root)"
+                        : "Ruta fuera de " + root + ": " + path);
+                return;
+            }
+            try {
+                file = file.toRealPath();
+            } catch (IOException e) {
+                respond(exchange, 404, TEXT_TYPE, "No existe el archivo: " + path);
+                return;
+            }
+            // un enlace simbólico dentro de root puede apuntar afuera
+            if (!file.startsWith(realRoot)) {
+                respond(exchange, 403, TEXT_TYPE, "Ruta fuera de " + root + ": " + path);
+                return;
+            }
+            if (!Files.isRegularFile(file)) {
+                respond(exchange, 404, TEXT_TYPE, "No existe el archivo: " + path);
+                return;
+            }
+        }
+
+        if (!permits.tryAcquire(QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            rejected.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, TEXT_TYPE, "Servidor ocupado, reintentar más tarde");
+            return;
+        }
+        // el permiso se conserva hasta terminar de responder: la memoria en uso queda acotada por workers
+        try {
+            boolean validateOnly = "1".equals(query.get("validate"));
+            XmlEmitter.Profile requested = XmlEmitter.Profile.of(
+                    profile.indented() && !"1".equals(query.get("compact")),
+                    profile.attributes() || "1".equals(query.get("attributes")));
+            byte[] data = fromBody ? exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1) : read(file);
+            if (data.length > MAX_BODY_BYTES) {
+                respond(exchange, 413, TEXT_TYPE, "El documento supera " + MAX_BODY_BYTES + " bytes");
+                return;
+            }
+            bytesIn.addAndGet(data.length);
+            requests.incrementAndGet();
+
+            Validator.Result validation = Validator.validate(data);
+            if (validateOnly) {
+                if (validation.valid()) {
+                    respond(exchange, 200, TEXT_TYPE, "válido\n");
+                } else {
+                    invalid.incrementAndGet();
+                    respond(exchange, 422, TEXT_TYPE, "Línea " + validation.line() + ", columna " + validation.column()
+                            + " (byte " + validation.offset() + "): documento inválido\n");
+                }
+            } else if (validation.valid()) {
+                // el resultado de Validator coincide con el del Parser: el XML va directo a la respuesta
+                exchange.getResponseHeaders().set("Content-Type", XML_TYPE);
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    Traductor traductor = translate(data, fromBody ? "http" : file.toString(), requested, out);
+                    bytesOut.addAndGet(traductor.getXmlBytes());
+                    if (!traductor.isValid()) {
+                        throw new IllegalStateException("Validator aceptó un documento que el Parser rechaza");
+                    }
+                }
+            } else {
+                // solo hacen falta los errores: el XML se descarta
+                Traductor traductor = translate(data, fromBody ? "http" : file.toString(), requested,
+                        OutputStream.nullOutputStream());
+                invalid.incrementAndGet();
+                List<String> errors = new ArrayList<>(traductor.getErrors());
+                exchange.getResponseHeaders().set("X-Errores", Integer.toString(errors.size()));
+                if (traductor.isAborted()) errors.add(AnalizadorSintactico.abortedMessage(maxErrors));
+                respond(exchange, 422, TEXT_TYPE, String.join("\n", errors) + "\n");
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Lee el archivo (descomprimido) hasta un byte más que MAX_BODY_BYTES, para saber si lo supera
+    private static byte[] read(Path file) throws IOException {
+        try (InputStream in = Compression.open(file)) {
+            return in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+    }
+
+    private Traductor translate(byte[] data, String name, XmlEmitter.Profile requested, OutputStream out) {
+        Metrics m = metrics ? new Metrics(name) : Metrics.NONE;
+        m.bytesRead(data.length);
+        m.begin(Metrics.Phase.LEX);
+        TokenBuffer tokens = Lexer.ofContent(new String(data, StandardCharsets.UTF_8)).tokenize();
+        m.end(Metrics.Phase.LEX);
+        m.countTokens(tokens);
+        Traductor traductor = new Traductor(tokens.cursor(), requested);
+        traductor.setMaxErrors(maxErrors);
+        m.begin(Metrics.Phase.TRANSLATE);
+        traductor.translate(out);
+        m.end(Metrics.Phase.TRANSLATE);
+        m.finish(traductor);
+        return traductor;
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (accepting) {
+                respond(exchange, 200, TEXT_TYPE, "ok\n");
+            } else {
+                respond(exchange, 503, TEXT_TYPE, "deteniendo\n");
+            }
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!metrics) {
+                respond(exchange, 404, TEXT_TYPE, "Métricas deshabilitadas (iniciar con --metrics)\n");
+                return;
+            }
+            respond(exchange, 200, TEXT_TYPE, MetricsRegistry.get().getSummaryLine() + "\n");
+        }
+    }
+
+    /**
+     * Ruta pedida resuelta dentro de root, o null si no hay root o queda
+     * fuera de él. Solo mira el texto de la ruta: los enlaces simbólicos se
+     * resuelven después, con toRealPath().
+     */
+    private Path resolve(String path) {
+        if (root == null) return null;
+        Path file;
+        try {
+            file = root.resolve(path).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        return file.startsWith(root) ? file : null;
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        respond(exchange, status, contentType, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        bytesOut.addAndGet(body.length);
+    }
+
+    // si ya se enviaron las cabeceras no queda más que cerrar la conexión
+    private void respondError(HttpExchange exchange, IOException e) {
+        try {
+            respond(exchange, 500, TEXT_TYPE, "Error de E/S: " + e.getMessage());
+        } catch (IOException | IllegalStateException ignored) {
+            // el cliente ya no está o la respuesta estaba a medias
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private void printSummary(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos / 1e9, 1e-9);
+        System.out.println("Servidor detenido.");
+        System.out.println("  Documentos traducidos: " + requests.get());
+        System.out.println("  Documentos con errores: " + invalid.get());
+        System.out.println("  Pedidos rechazados por saturación: " + rejected.get());
+        System.out.printf(Locale.ROOT, "  Bytes recibidos: %d, bytes enviados: %d%n", bytesIn.get(), bytesOut.get());
+        System.out.printf(Locale.ROOT, "  Tiempo activo: %.1f s%n", seconds);
+    }
+}
@@ -0,0 +1,346 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Caché en disco de traducciones, indexada por el contenido de la entrada.
+ *
+ * La clave de un documento es el hash XXH64 de sus bytes (tal como están en
+ * el archivo, comprimidos o no) con una semilla que resume las opciones que
+ * cambian el resultado, más su longitud. Cada entrada es un archivo del
+ * directorio de la caché: clave.xml con el XML exacto que se escribió
+ * (precedido por los 8 bytes de getXmlBytes(), que con una salida comprimida
+ * no es su tamaño), o clave.err con los errores si el documento era
+ * inválido. Con un acierto no
+ * se analiza nada: el XML se copia a la salida con FileChannel.transferTo,
+ * que en Linux no pasa los bytes por la JVM.
+ *
+ * Las entradas se escriben en un temporal y se mueven de forma atómica, así
+ * que otro proceso (u otra ejecución interrumpida) nunca ve una a medias. El
+ * tamaño total está acotado: al superarlo se borran las entradas usadas hace
+ * más tiempo. El orden de uso se guarda en la fecha de modificación de cada
+ * archivo, que se actualiza en cada acierto, de modo que sobrevive entre
+ * ejecuciones.
+ *
+ * La caché no sabe de versiones del Traductor: al cambiar la traducción hay
+ * que vaciar el directorio (o subir FORMAT).
+ */
+public final class TranslationCache {
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+    // forma parte de la clave: cambiarlo invalida las entradas anteriores
+    private static final int FORMAT = 1;
+    private static final String XML = ".xml";
+    private static final String ERR = ".err";
+    private static final String ABORTED = "abortado";
+    private static final String COMPLETE = "completo";
+    // bloques de hash: múltiplo de 32 bytes para no cortar una franja de XXH64
+    private static final long HASH_CHUNK = 1L << 28;
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    /**
+     * Resultado de una traducción, tomado de la caché o de un Traductor.
+     * written es false si no se pudo escribir la salida (el XML o los errores).
+     */
+    public record Result(boolean valid, boolean aborted, List<String> errors, long xmlBytes, boolean written) {
+        static Result of(Traductor traductor) {
+            return new Result(traductor.isValid(), traductor.isAborted(), traductor.getErrors(), traductor.getXmlBytes(),
+                    traductor.isWritten());
+        }
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    // nombre del archivo → tamaño, del usado hace más tiempo al más reciente
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public TranslationCache(Path dir, long maxBytes) throws IOException {
+        if (maxBytes < 0) throw new IllegalArgumentException("El tamaño de la caché debe ser >= 0");
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    // Arma el índice con las entradas existentes, de la más vieja a la más nueva
+    private void load() throws IOException {
+        record Found(String name, long size, FileTime used) { }
+        List<Found> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                try {
+                    if (name.endsWith(".tmp")) {
+                        // restos de una escritura interrumpida (uno reciente puede ser de otro proceso)
+                        if (Files.getLastModifiedTime(file).toMillis() < System.currentTimeMillis() - STALE_TEMP_MILLIS) {
+                            Files.deleteIfExists(file);
+                        }
+                    } else if (name.endsWith(XML) || name.endsWith(ERR)) {
+                        found.add(new Found(name, Files.size(file), Files.getLastModifiedTime(file)));
+                    }
+                } catch (NoSuchFileException e) {
+                    // otro proceso la borró mientras se listaba
+                }
+            }
+        }
+        found.sort(Comparator.comparing(Found::used));
+        for (Found f : found) add(f.name(), f.size());
+        evict();
+    }
+
+    /**
+     * Clave del archivo de entrada con las opciones dadas (el perfil, el
+     * límite de errores, el formato de salida, ...: todo lo que cambie los
+     * bytes generados).
+     */
+    public String key(Path input, String options) throws IOException {
+        byte[] text = (FORMAT + "|" + options).getBytes(StandardCharsets.UTF_8);
+        long seed = xxh64(text);
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return String.format("%016x-%x", xxh64(channel, size, seed), size);
+        }
+    }
+
+    /**
+     * Si la clave está en la caché, escribe el resultado guardado como lo
+     * haría Traductor.translateAndWrite(): el XML en xmlOut si el documento
+     * era válido, o los errores en errOut (sin tocar xmlOut) si no. Devuelve
+     * null si no está.
+     */
+    public Result restore(String key, Path xmlOut, Path errOut) throws IOException {
+        Path xml = dir.resolve(key + XML);
+        Path err = dir.resolve(key + ERR);
+        try {
+            if (Files.exists(xml)) {
+                long xmlBytes = copy(xml, xmlOut);
+                used(xml, Files.size(xml));
+                return new Result(true, false, List.of(), xmlBytes, true);
+            }
+            if (Files.exists(err)) {
+                List<String> lines = Files.readAllLines(err, StandardCharsets.UTF_8);
+                if (lines.isEmpty()) throw new NoSuchFileException(err.toString());
+                List<String> errors = lines.subList(1, lines.size());
+                try (BufferedWriter w = new BufferedWriter(new FileWriter(errOut.toFile()))) {
+                    for (String e : errors) {
+                        w.write(e);
+                        w.write(System.lineSeparator());
+                    }
+                }
+                used(err, Files.size(err));
+                return new Result(false, lines.get(0).equals(ABORTED), List.copyOf(errors), 0, true);
+            }
+        } catch (NoSuchFileException e) {
+            // la borró otro proceso (o la desalojó otro hilo) entre la consulta y la lectura
+        }
+        synchronized (this) {
+            misses++;
+        }
+        return null;
+    }
+
+    /**
+     * Guarda el resultado de una traducción recién hecha: una copia de xmlOut
+     * si el documento es válido, o sus errores.
+     */
+    public void store(String key, Traductor traductor, Path xmlOut) throws IOException {
+        String name = key + (traductor.isValid() ? XML : ERR);
+        Path target = dir.resolve(name);
+        Path tmp = Traductor.tempSibling(target);
+        try {
+            if (traductor.isValid()) {
+                try (FileChannel in = FileChannel.open(xmlOut, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    ByteBuffer header = ByteBuffer.allocate(Long.BYTES).putLong(0, traductor.getXmlBytes());
+                    while (header.hasRemaining()) out.write(header);
+                    transfer(in, 0, out);
+                }
+            } else {
+                try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
+                    w.write(traductor.isAborted() ? ABORTED : COMPLETE);
+                    w.newLine();
+                    for (String e : traductor.getErrors()) {
+                        w.write(e);
+                        w.newLine();
+                    }
+                }
+            }
+            long size = Files.size(tmp);
+            // no entra: guardarla desalojaría todo lo demás y a ella misma
+            if (size > maxBytes) return;
+            Traductor.moveReplacing(tmp, target);
+            synchronized (this) {
+                Long previous = entries.remove(name);
+                if (previous != null) totalBytes -= previous;
+                add(name, size);
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /** Tamaño de las entradas guardadas, en bytes. */
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    private synchronized void used(Path entry, long size) throws IOException {
+        hits++;
+        String name = entry.getFileName().toString();
+        if (entries.get(name) == null) add(name, size);
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private void add(String name, long size) {
+        entries.put(name, size);
+        totalBytes += size;
+    }
+
+    // Borra las menos usadas hasta volver al límite
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    // Copia el XML de la entrada a la salida pasando por un temporal, como
+    // translateAndWrite(); devuelve los bytes de XML guardados en la cabecera
+    private static long copy(Path entry, Path out) throws IOException {
+        Path target = out.toAbsolutePath();
+        Path tmp = Traductor.tempSibling(target);
+        try {
+            long xmlBytes;
+            try (FileChannel in = FileChannel.open(entry, StandardOpenOption.READ);
+                 FileChannel to = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+                while (header.hasRemaining()) {
+                    if (in.read(header) < 0) throw new EOFException("Entrada de la caché incompleta: " + entry);
+                }
+                xmlBytes = header.getLong(0);
+                transfer(in, Long.BYTES, to);
+            }
+            Traductor.moveReplacing(tmp, target);
+            return xmlBytes;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Desde position hasta el final de in, a continuación de lo escrito en out, sin pasar por el heap
+    private static void transfer(FileChannel in, long position, FileChannel out) throws IOException {
+        long size = in.size();
+        while (position < size) position += in.transferTo(position, size - position, out);
+    }
+
+    // XXH64 (https://github.com/Cyan4973/xxHash), leyendo el archivo mapeado de a bloques
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    static long xxh64(byte[] data) {
+        return xxh64(ByteBuffer.wrap(data), data.length, 0, null);
+    }
+
+    private static long xxh64(FileChannel channel, long size, long seed) throws IOException {
+        if (size == 0) return xxh64(ByteBuffer.allocate(0), 0, seed, null);
+        long[] v = {seed + P1 + P2, seed + P2, seed, seed - P1};
+        long result = 0;
+        for (long pos = 0; pos < size; pos += HASH_CHUNK) {
+            long length = Math.min(HASH_CHUNK, size - pos);
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            if (pos + length < size) {
+                stripes(chunk.order(ByteOrder.LITTLE_ENDIAN), (int) length, v);
+            } else {
+                result = xxh64(chunk, size, seed, v);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Termina el hash con el último bloque (todo el texto si v es null; si
+     * no, v trae el estado de los bloques anteriores y size es el total).
+     */
+    private static long xxh64(ByteBuffer last, long size, long seed, long[] v) {
+        ByteBuffer b = last.order(ByteOrder.LITTLE_ENDIAN);
+        int n = b.limit();
+        int i = 0;
+        long h;
+        if (size >= 32) {
+            if (v == null) v = new long[]{seed + P1 + P2, seed + P2, seed, seed - P1};
+            i = stripes(b, n, v);
+            h = Long.rotateLeft(v[0], 1) + Long.rotateLeft(v[1], 7) + Long.rotateLeft(v[2], 12) + Long.rotateLeft(v[3], 18);
+            for (long x : v) h = (h ^ round(0, x)) * P1 + P4;
+        } else {
+            h = seed + P5;
+        }
+        h += size;
+        for (; i + 8 <= n; i += 8) {
+            h ^= round(0, b.getLong(i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i + 4 <= n) {
+            h ^= (b.getInt(i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < n; i++) {
+            h ^= (b.get(i) & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    // Franjas de 32 bytes; devuelve dónde termina la última completa
+    private static int stripes(ByteBuffer b, int n, long[] v) {
+        long v1 = v[0], v2 = v[1], v3 = v[2], v4 = v[3];
+        int i = 0;
+        for (; i + 32 <= n; i += 32) {
+            v1 = round(v1, b.getLong(i));
+            v2 = round(v2, b.getLong(i + 8));
+            v3 = round(v3, b.getLong(i + 16));
+            v4 = round(v4, b.getLong(i + 24));
+        }
+        v[0] = v1;
+        v[1] = v2;
+        v[2] = v3;
+        v[3] = v4;
+        return i;
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+}
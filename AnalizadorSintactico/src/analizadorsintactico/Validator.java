@@ -0,0 +1,535 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+/**
+ * Validación sin traducir: dice si un documento cumple la gramática (la
+ * misma que acepta el Parser) y, si no, dónde está el primer error.
+ *
+ * Recorre los bytes UTF-8 con una máquina de estados y una pila de
+ * profundidad (un bit por nivel: objeto o arreglo), sin crear Tokens ni
+ * Strings. El resultado coincide con Parser.isValid() sobre los tokens de
+ * Lexer, incluidas sus particularidades: espacios, dígitos y letras según
+ * Character (también fuera de ASCII), palabras reservadas sin distinguir
+ * mayúsculas, y una cadena sin comilla de cierre, que es un error léxico. Los bytes
+ * UTF-8 mal formados se cuentan como lo hace el decodificador de Java (un
+ * U+FFFD por secuencia), que es lo que ve el Lexer.
+ *
+ * El primer error es el primer token que no es válido donde aparece (el
+ * mismo que informa primero el Parser). Su línea y columna se calculan recién
+ * al final, recorriendo la entrada hasta él.
+ *
+ * Un archivo se lee de a bloques en un buffer que se reutiliza, así que la
+ * memoria no depende de su tamaño: el estado, la pila y una cadena a medio
+ * recorrer pasan de un bloque al siguiente, y un token corto cortado por el
+ * borde se vuelve a leer entero al principio del bloque nuevo.
+ *
+ * Una instancia se puede reutilizar (conserva la pila) pero no es segura
+ * entre hilos.
+ */
+public final class Validator {
+    // estados: qué token puede venir
+    private static final int ROOT = 0;           // { o [
+    private static final int ARRAY_FIRST = 1;    // ] o elemento
+    private static final int ARRAY_ELEMENT = 2;  // elemento (después de ',')
+    private static final int ARRAY_NEXT = 3;     // , o ]
+    private static final int OBJECT_FIRST = 4;   // } o clave
+    private static final int OBJECT_KEY = 5;     // clave (después de ',')
+    private static final int OBJECT_COLON = 6;   // :
+    private static final int OBJECT_VALUE = 7;   // valor de atributo
+    private static final int OBJECT_NEXT = 8;    // , o }
+    private static final int END = 9;            // fin del documento
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long QUOTES = '"' * ONES;
+    private static final long BACKSLASHES = '\\' * ONES;
+
+    // bytes que se miran de una vez desde el inicio de un token: más que una
+    // palabra reservada seguida de un carácter UTF-8, o que un escape unicode
+    private static final int LOOKAHEAD = 16;
+    // lo que ocupa un carácter UTF-8
+    private static final int MAX_CHAR_LENGTH = 4;
+
+    /**
+     * valid, o la posición del primer error: offset en bytes desde el inicio
+     * de la entrada (el largo si el documento termina antes de tiempo), y
+     * línea y columna como las cuenta el Lexer (columna en caracteres).
+     * Para un documento válido offset es -1 y line y column, 0.
+     */
+    public record Result(boolean valid, long offset, int line, int column) {
+        static final Result VALID = new Result(true, -1, 0, 0);
+
+        @Override
+        public String toString() {
+            return valid ? "válido"
+                    : "inválido: primer error en la línea " + line + ", columna " + column + " (byte " + offset + ")";
+        }
+    }
+
+    // bit k = 1 si el nivel k es un objeto, 0 si es un arreglo
+    private long[] stack = new long[16];
+    private int depth;
+
+    // la entrada se recorre en buffer[pos, limit); buffer[0] está en el offset base
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    private long base;
+    // de dónde sale el próximo bloque; null si ya está todo en buffer
+    private InputStream source;
+    private byte[] chunk;
+
+    /**
+     * Valida el archivo (descomprimiéndolo si hace falta, ver Compression) de
+     * a bloques de Compression.CHUNK_SIZE bytes. Si es inválido se lee otra
+     * vez hasta el error para dar su línea y columna.
+     */
+    public static Result validate(Path file) throws IOException {
+        Validator validator = new Validator();
+        long error;
+        try (InputStream in = Compression.open(file)) {
+            validator.load(in);
+            error = validator.check();
+        }
+        if (error < 0) return Result.VALID;
+        try (InputStream in = Compression.open(file)) {
+            validator.load(in);
+            return validator.position(error);
+        }
+    }
+
+    public static Result validate(byte[] data) {
+        return new Validator().validate(data, 0, data.length);
+    }
+
+    /** Valida data[from, to); el offset del resultado es relativo a from. */
+    public Result validate(byte[] data, int from, int to) {
+        try {
+            load(data, from, to);
+            long error = check();
+            if (error < 0) return Result.VALID;
+            load(data, from, to);
+            return position(error);
+        } catch (IOException e) {
+            // sin source no se lee nada
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer = null;
+        }
+    }
+
+    private void load(byte[] data, int from, int to) {
+        buffer = data;
+        pos = from;
+        limit = to;
+        base = -from;
+        source = null;
+    }
+
+    private void load(InputStream in) {
+        if (chunk == null) chunk = new byte[Compression.CHUNK_SIZE];
+        buffer = chunk;
+        pos = 0;
+        limit = 0;
+        base = 0;
+        source = in;
+    }
+
+    /**
+     * Descarta buffer[0, pos) y agrega a continuación lo que se pueda leer
+     * de source. Devuelve false si la entrada ya terminó.
+     */
+    private boolean refill() throws IOException {
+        if (source == null) return false;
+        int kept = limit - pos;
+        System.arraycopy(buffer, pos, buffer, 0, kept);
+        base += pos;
+        limit = kept;
+        pos = 0;
+        int n = source.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            source = null;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    // Deja al menos n bytes en buffer desde pos, salvo que la entrada termine antes
+    private void ensure(int n) throws IOException {
+        while (limit - pos < n && refill()) {
+            // un stream puede devolver menos de lo pedido
+        }
+    }
+
+    // Devuelve -1 si el documento es válido o el offset del primer token con error
+    private long check() throws IOException {
+        depth = 0;
+        int state = ROOT;
+        while (true) {
+            if (!skipSpaces()) return state == END ? -1 : base + limit;
+            ensure(LOOKAHEAD);
+            byte[] data = buffer;
+            int i = pos;
+            int to = limit;
+            long start = base + i;
+            int b = data[i] & 0xFF;
+            switch (b) {
+                case '{' -> {
+                    if (state != ROOT && state != ARRAY_FIRST && state != ARRAY_ELEMENT && state != OBJECT_VALUE) return start;
+                    push(true);
+                    state = OBJECT_FIRST;
+                    pos = i + 1;
+                }
+                case '[' -> {
+                    if (state != ROOT && state != ARRAY_FIRST && state != ARRAY_ELEMENT && state != OBJECT_VALUE) return start;
+                    push(false);
+                    state = ARRAY_FIRST;
+                    pos = i + 1;
+                }
+                case '}' -> {
+                    if (state != OBJECT_FIRST && state != OBJECT_NEXT) return start;
+                    depth--;
+                    state = afterValue();
+                    pos = i + 1;
+                }
+                case ']' -> {
+                    if (state != ARRAY_FIRST && state != ARRAY_NEXT) return start;
+                    depth--;
+                    state = afterValue();
+                    pos = i + 1;
+                }
+                case ':' -> {
+                    if (state != OBJECT_COLON) return start;
+                    state = OBJECT_VALUE;
+                    pos = i + 1;
+                }
+                case ',' -> {
+                    if (state == OBJECT_NEXT) {
+                        state = OBJECT_KEY;
+                    } else if (state == ARRAY_NEXT) {
+                        state = ARRAY_ELEMENT;
+                    } else {
+                        return start;
+                    }
+                    pos = i + 1;
+                }
+                case '"' -> {
+                    if (state != OBJECT_FIRST && state != OBJECT_KEY && state != OBJECT_VALUE) return start;
+                    pos = i + 1;
+                    // sin comilla de cierre o con un escape inválido: la cadena entera es un error
+                    if (!scanString()) return start;
+                    state = state == OBJECT_VALUE ? OBJECT_NEXT : OBJECT_COLON;
+                }
+                default -> {
+                    if (isDigitAt(data, i, to) || (b == '-' && i + 1 < to && isDigitAt(data, i + 1, to))) {
+                        if (state != OBJECT_VALUE) return start;
+                        pos = b == '-' ? i + 1 : i;
+                        scanNumber();
+                    } else if (b >= 0x80 && isWhitespace(decode(data, i, to))) {
+                        pos = i + length(decode(data, i, to));
+                        continue;
+                    } else {
+                        int end = scanKeyword(data, i, to);
+                        // palabra no reconocida o carácter inválido
+                        if (end < 0 || state != OBJECT_VALUE) return start;
+                        pos = end;
+                    }
+                    state = OBJECT_NEXT;
+                }
+            }
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == stack.length * 64) stack = java.util.Arrays.copyOf(stack, stack.length * 2);
+        long bit = 1L << (depth & 63);
+        if (object) {
+            stack[depth >>> 6] |= bit;
+        } else {
+            stack[depth >>> 6] &= ~bit;
+        }
+        depth++;
+    }
+
+    // Estado después de un valor completo, según el contenedor que lo tiene
+    private int afterValue() {
+        if (depth == 0) return END;
+        int top = depth - 1;
+        return (stack[top >>> 6] & (1L << (top & 63))) != 0 ? OBJECT_NEXT : ARRAY_NEXT;
+    }
+
+    // Salta los espacios ASCII; devuelve false si la entrada terminó
+    private boolean skipSpaces() throws IOException {
+        do {
+            byte[] data = buffer;
+            int i = pos;
+            int to = limit;
+            while (i < to && isAsciiSpace(data[i])) i++;
+            pos = i;
+            if (i < to) return true;
+        } while (refill());
+        return false;
+    }
+
+    // Character.isWhitespace para un byte ASCII
+    private static boolean isAsciiSpace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /**
+     * Avanza desde pos hasta después de la comilla de cierre, saltando los
+     * escapes como Lexer.extractString. Devuelve false si no hay comilla de
+     * cierre o si la cadena tiene un escape inválido. Se buscan de a ocho
+     * bytes la comilla y la barra: las dos son ASCII, así que no hace falta
+     * decodificar UTF-8 (ningún byte de un carácter multibyte se les parece).
+     * Lo ya recorrido se descarta al pedir otro bloque, salvo un escape
+     * cortado, que se vuelve a leer entero.
+     */
+    private boolean scanString() throws IOException {
+        boolean invalid = false;
+        byte[] data = buffer;
+        int i = pos;
+        while (true) {
+            int to = limit;
+            while (i + Long.BYTES <= to) {
+                long word = (long) LONGS.get(data, i);
+                long quotes = word ^ QUOTES;
+                long backslashes = word ^ BACKSLASHES;
+                // bit alto de cada byte igual a 0 tras el xor; el primero (el menos significativo) es exacto
+                long found = ((quotes - ONES) & ~quotes | (backslashes - ONES) & ~backslashes) & HIGHS;
+                if (found != 0) {
+                    i += Long.numberOfTrailingZeros(found) >>> 3;
+                    break;
+                }
+                i += Long.BYTES;
+            }
+            while (i < to && data[i] != '"' && data[i] != '\\') i++;
+            if (i >= to) {
+                pos = Math.min(i, to);
+                if (!refill()) return false;
+                i = pos;
+                continue;
+            }
+            if (data[i] == '"') {
+                pos = i + 1;
+                return !invalid;
+            }
+            if (to - i < StringEscapes.MAX_ESCAPE_LENGTH) {
+                pos = i;
+                if (refill()) {
+                    i = pos;
+                    continue;
+                }
+            }
+            int escape = escapeLength(data, i, limit);
+            if (escape == 0) {
+                invalid = true;
+                escape = 2;
+            }
+            i += escape;
+        }
+    }
+
+    // StringEscapes.escapeLength sobre bytes (la secuencia es ASCII)
+    private static int escapeLength(byte[] data, int at, int to) {
+        if (at + 1 >= to) return 0;
+        int c = data[at + 1];
+        if (StringEscapes.isSimpleEscape(c)) return 2;
+        if (c != 'u' || at + StringEscapes.MAX_ESCAPE_LENGTH > to) return 0;
+        for (int k = at + 2; k < at + StringEscapes.MAX_ESCAPE_LENGTH; k++) {
+            if (StringEscapes.hexValue(data[k]) < 0) return 0;
+        }
+        return StringEscapes.MAX_ESCAPE_LENGTH;
+    }
+
+    // Avanza pos hasta el fin del número
+    private void scanNumber() throws IOException {
+        while (true) {
+            byte[] data = buffer;
+            int i = pos;
+            int to = limit;
+            while (i < to) {
+                byte b = data[i];
+                if ((b >= '0' && b <= '9') || b == '.') {
+                    i++;
+                } else if (b < 0 && isDigit(decode(data, i, to))) {
+                    i += length(decode(data, i, to));
+                } else {
+                    break;
+                }
+            }
+            pos = i;
+            // cerca del borde, el carácter que cortó el número puede estar incompleto
+            if (to - i >= MAX_CHAR_LENGTH || !refill()) return;
+        }
+    }
+
+    /**
+     * Fin de la palabra reservada que empieza en i, o -1 si ahí hay otra
+     * palabra o un carácter que no forma ningún token. Como en el Lexer, la
+     * palabra sigue mientras haya letras (también fuera de ASCII, y entonces
+     * no es reservada) y se compara sin distinguir mayúsculas.
+     */
+    private static int scanKeyword(byte[] data, int i, int to) {
+        int end = i;
+        while (end < to) {
+            byte b = data[end];
+            if (isAsciiLetter(b)) {
+                end++;
+            } else if (b < 0 && isLetter(decode(data, end, to))) {
+                return -1;
+            } else {
+                break;
+            }
+        }
+        int length = end - i;
+        if (length == 4) {
+            if (matches(data, i, "true") || matches(data, i, "null")) return end;
+        } else if (length == 5) {
+            if (matches(data, i, "false")) return end;
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiLetter(byte b) {
+        return (b | 0x20) >= 'a' && (b | 0x20) <= 'z';
+    }
+
+    // keyword en minúsculas; (b | 0x20) pasa a minúscula una letra ASCII
+    private static boolean matches(byte[] data, int i, String keyword) {
+        for (int k = 0; k < keyword.length(); k++) {
+            if ((data[i + k] | 0x20) != keyword.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigitAt(byte[] data, int i, int to) {
+        byte b = data[i];
+        if (b >= 0) return b >= '0' && b <= '9';
+        return isDigit(decode(data, i, to));
+    }
+
+    // Las clasificaciones del Lexer son por char: un carácter fuera del BMP (un par) no es ninguna
+    private static boolean isWhitespace(int decoded) {
+        int cp = codePoint(decoded);
+        return cp <= Character.MAX_VALUE && Character.isWhitespace(cp);
+    }
+
+    private static boolean isDigit(int decoded) {
+        int cp = codePoint(decoded);
+        return cp <= Character.MAX_VALUE && Character.isDigit(cp);
+    }
+
+    private static boolean isLetter(int decoded) {
+        int cp = codePoint(decoded);
+        return cp <= Character.MAX_VALUE && Character.isLetter(cp);
+    }
+
+    private static int codePoint(int decoded) {
+        return decoded & 0x1FFFFF;
+    }
+
+    private static int length(int decoded) {
+        return decoded >>> 24;
+    }
+
+    /**
+     * Decodifica el carácter UTF-8 (no ASCII) que empieza en i y devuelve
+     * (largo << 24) | código. Una secuencia mal formada da U+FFFD con el largo
+     * que le asigna el decodificador de Java: hasta el primer byte que no
+     * corresponde, todo el resto si la entrada se corta en el medio, y la
+     * secuencia entera si codifica un surrogate.
+     */
+    private static int decode(byte[] data, int i, int to) {
+        int b1 = data[i] & 0xFF;
+        int available = to - i;
+        int need;
+        if (b1 >= 0xC2 && b1 <= 0xDF) {
+            need = 2;
+        } else if (b1 >= 0xE0 && b1 <= 0xEF) {
+            need = 3;
+        } else if (b1 >= 0xF0 && b1 <= 0xF4) {
+            need = 4;
+        } else {
+            return malformed(1);
+        }
+        if (available < 2) return malformed(available);
+        int b2 = data[i + 1] & 0xFF;
+        boolean badSecond = switch (b1) {
+            case 0xE0 -> b2 < 0xA0 || b2 > 0xBF;
+            case 0xF0 -> b2 < 0x90 || b2 > 0xBF;
+            case 0xF4 -> b2 < 0x80 || b2 > 0x8F;
+            default -> !isContinuation(b2);
+        };
+        if (badSecond) return malformed(1);
+        if (need == 2) return 2 << 24 | (b1 & 0x1F) << 6 | (b2 & 0x3F);
+        if (available < 3) return malformed(available);
+        int b3 = data[i + 2] & 0xFF;
+        if (!isContinuation(b3)) return malformed(2);
+        if (need == 3) {
+            int cp = (b1 & 0x0F) << 12 | (b2 & 0x3F) << 6 | (b3 & 0x3F);
+            return Character.isSurrogate((char) cp) ? malformed(3) : 3 << 24 | cp;
+        }
+        if (available < 4) return malformed(available);
+        int b4 = data[i + 3] & 0xFF;
+        if (!isContinuation(b4)) return malformed(3);
+        return 4 << 24 | (b1 & 0x07) << 18 | (b2 & 0x3F) << 12 | (b3 & 0x3F) << 6 | (b4 & 0x3F);
+    }
+
+    private static boolean isContinuation(int b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    private static int malformed(int length) {
+        return length << 24 | 0xFFFD;
+    }
+
+    /**
+     * Resultado para un error en el offset error, recorriendo la entrada
+     * cargada desde el principio: la línea y la columna se cuentan como en el
+     * Lexer, con \r\n y \r como saltos de línea y la columna en chars. Al final
+     * del documento el Lexer ya agregó el salto de la última línea, así que el
+     * error queda en la línea siguiente, columna 1.
+     */
+    private Result position(long error) throws IOException {
+        int line = 1;
+        int column = 1;
+        while (base + pos < error) {
+            // un salto \r\n o un carácter UTF-8 no quedan cortados antes de stop
+            ensure(MAX_CHAR_LENGTH);
+            byte[] data = buffer;
+            int i = pos;
+            int to = limit;
+            long stop = Math.min(error - base, source == null ? to : to - MAX_CHAR_LENGTH + 1);
+            do {
+                byte b = data[i];
+                if (b == '\n' || b == '\r') {
+                    i += b == '\r' && i + 1 < to && data[i + 1] == '\n' ? 2 : 1;
+                    line++;
+                    column = 1;
+                } else if (b >= 0) {
+                    i++;
+                    column++;
+                } else {
+                    int decoded = decode(data, i, to);
+                    i += length(decoded);
+                    column += Character.charCount(codePoint(decoded));
+                }
+            } while (i < stop);
+            pos = i;
+        }
+        ensure(1);
+        if (pos == limit && column > 1) {
+            line++;
+            column = 1;
+        }
+        return new Result(false, error, line, column);
+    }
+}
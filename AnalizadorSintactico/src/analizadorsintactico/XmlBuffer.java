@@ -0,0 +1,136 @@
+package analizadorsintactico;
+
+import java.io.*;
+
+/**
+ * Buffer de salida de tamaño fijo para el XML generado.
+ *
+ * El texto se codifica directamente a UTF-8 dentro de un arreglo de bytes que
+ * se vuelca al OutputStream destino cada vez que se llena, de modo que la
+ * memoria usada no depende del tamaño del documento traducido. Los errores de
+ * escritura se propagan como WriteFailure, una UncheckedIOException (igual que
+ * StreamLexer con los de lectura) que permite distinguir unos de otros.
+ */
+public class XmlBuffer implements Flushable, Closeable {
+    public static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    /** Fallo al escribir en el OutputStream destino. */
+    public static final class WriteFailure extends UncheckedIOException {
+        WriteFailure(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int count = 0;
+    private long bytesWritten = 0;
+
+    public XmlBuffer(OutputStream out) {
+        this(out, DEFAULT_CAPACITY);
+    }
+
+    public XmlBuffer(OutputStream out, int capacity) {
+        if (capacity < 4) throw new IllegalArgumentException("capacity debe ser >= 4");
+        this.out = out;
+        this.buf = new byte[capacity];
+    }
+
+    public XmlBuffer write(byte b) {
+        if (count == buf.length) drain();
+        buf[count++] = b;
+        return this;
+    }
+
+    public XmlBuffer write(byte[] b) {
+        return write(b, 0, b.length);
+    }
+
+    public XmlBuffer write(byte[] b, int off, int len) {
+        if (len > buf.length) {
+            // no vale la pena copiarlo: se escribe directo al destino
+            drain();
+            try {
+                out.write(b, off, len);
+            } catch (IOException e) {
+                throw new WriteFailure(e);
+            }
+            bytesWritten += len;
+            return this;
+        }
+        if (len > buf.length - count) drain();
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+        return this;
+    }
+
+    /** Escribe el texto codificado en UTF-8. */
+    public XmlBuffer write(CharSequence s) {
+        return write(s, 0, s.length());
+    }
+
+    public XmlBuffer write(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (count == buf.length) drain();
+                buf[count++] = (byte) c;
+            } else if (c < 0x800) {
+                if (buf.length - count < 2) drain();
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                if (buf.length - count < 4) drain();
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // surrogate sin pareja: no es representable en UTF-8
+                write((byte) '?');
+            } else {
+                if (buf.length - count < 3) drain();
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /** Total de bytes entregados a este buffer (volcados o pendientes). */
+    public long bytesWritten() {
+        return bytesWritten + count;
+    }
+
+    private void drain() {
+        if (count == 0) return;
+        try {
+            out.write(buf, 0, count);
+        } catch (IOException e) {
+            throw new WriteFailure(e);
+        }
+        bytesWritten += count;
+        count = 0;
+    }
+
+    @Override
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new WriteFailure(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+}
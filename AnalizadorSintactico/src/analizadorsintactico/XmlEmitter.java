@@ -0,0 +1,255 @@
+package analizadorsintactico;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Escritor de elementos XML sobre un XmlBuffer.
+ *
+ * Se encarga de la indentación y del escape del texto:
+ * - el texto se recorre una sola vez; los tramos sin caracteres especiales se
+ *   copian en bloque y solo se intercalan las entidades (&amp;, &lt;, ...),
+ *   sin crear Strings intermedios. Un retorno de carro (por ejemplo, de un
+ *   escape \r) se escribe como &#13; para que no se pierda al leer el XML, y
+ *   los demás caracteres de control, que XML 1.0 no admite, como U+FFFD;
+ * - la indentación se escribe copiando un prefijo de tabulaciones
+ *   precalculado en lugar de un carácter por vez.
+ *
+ * Con el perfil COMPACT no se escriben indentación ni saltos de línea.
+ *
+ * Con los perfiles de atributos, la etiqueta de apertura queda sin cerrar
+ * hasta que se escribe otra cosa, y mientras tanto se le pueden agregar
+ * atributos (ver attribute()); un elemento que se cierra sin contenido se
+ * escribe como <tag .../>.
+ */
+public class XmlEmitter implements Flushable {
+    public enum Profile {
+        /** Un elemento por línea, indentado con tabulaciones. */
+        INDENTED(true, false),
+        /** Sin indentación ni saltos de línea entre elementos. */
+        COMPACT(false, false),
+        /** Como INDENTED, pero los escalares de un objeto van como atributos de su elemento. */
+        ATTRIBUTES(true, true),
+        /** Como COMPACT, con los escalares como atributos. */
+        COMPACT_ATTRIBUTES(false, true);
+
+        private final boolean indented;
+        private final boolean attributes;
+
+        Profile(boolean indented, boolean attributes) {
+            this.indented = indented;
+            this.attributes = attributes;
+        }
+
+        public boolean indented() {
+            return indented;
+        }
+
+        public boolean attributes() {
+            return attributes;
+        }
+
+        public static Profile of(boolean indented, boolean attributes) {
+            if (attributes) return indented ? ATTRIBUTES : COMPACT_ATTRIBUTES;
+            return indented ? INDENTED : COMPACT;
+        }
+    }
+
+    private static final byte[] CLOSE_TAG_START = {'<', '/'};
+    private static final byte[] TABS = new byte[64];
+    private static final byte[][] ENTITIES = new byte[128][];
+    // en un atributo, además, los blancos que el lector normalizaría a espacios
+    private static final byte[][] ATTRIBUTE_ENTITIES;
+    private static final byte[] EMPTY_TAG_END = {'/', '>'};
+    // cantidad de atributos desde la que se buscan repetidos con un HashSet
+    private static final int ATTRIBUTE_SET_THRESHOLD = 16;
+
+    static {
+        Arrays.fill(TABS, (byte) '\t');
+        ENTITIES['&'] = ascii("&amp;");
+        ENTITIES['<'] = ascii("&lt;");
+        ENTITIES['>'] = ascii("&gt;");
+        ENTITIES['"'] = ascii("&quot;");
+        ENTITIES['\''] = ascii("&apos;");
+        ENTITIES['\r'] = ascii("&#13;");
+        byte[] replacement = "\uFFFD".getBytes(StandardCharsets.UTF_8);
+        for (int c = 0; c < 0x20; c++) {
+            if (c != '\t' && c != '\n' && c != '\r') ENTITIES[c] = replacement;
+        }
+        ATTRIBUTE_ENTITIES = ENTITIES.clone();
+        ATTRIBUTE_ENTITIES['\t'] = ascii("&#9;");
+        ATTRIBUTE_ENTITIES['\n'] = ascii("&#10;");
+    }
+
+    private final XmlBuffer out;
+    private final boolean indented;
+    private final boolean attributes;
+    private int depth = 0;
+    // la última etiqueta de apertura todavía no tiene su '>': admite atributos
+    private boolean pending = false;
+    private final List<byte[]> attributeNames = new ArrayList<>();
+    private Set<ByteBuffer> attributeSet;
+
+    public XmlEmitter(OutputStream out, Profile profile) {
+        this(new XmlBuffer(out), profile);
+    }
+
+    public XmlEmitter(XmlBuffer out, Profile profile) {
+        this.out = out;
+        this.indented = profile.indented();
+        this.attributes = profile.attributes();
+    }
+
+    /** Nivel de indentación actual. */
+    public int depth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = Math.max(depth, 0);
+    }
+
+    public void push() {
+        depth++;
+    }
+
+    public void pop() {
+        if (depth > 0) depth--;
+    }
+
+    /** Escribe una línea tal cual (sin escapar), por ejemplo la declaración XML. */
+    public XmlEmitter line(String text) {
+        closePending();
+        out.write(text);
+        newline();
+        return this;
+    }
+
+    /** &lt;tag&gt; en su propia línea; los elementos siguientes quedan un nivel adentro. */
+    public void openTag(byte[] tag) {
+        closePending();
+        indent();
+        out.write((byte) '<').write(tag);
+        if (attributes) {
+            pending = true;
+            attributeNames.clear();
+            attributeSet = null;
+        } else {
+            out.write((byte) '>');
+            newline();
+        }
+        push();
+    }
+
+    public void closeTag(byte[] tag) {
+        pop();
+        if (pending) {
+            pending = false;
+            out.write(EMPTY_TAG_END);
+            newline();
+            return;
+        }
+        indent();
+        out.write(CLOSE_TAG_START).write(tag).write((byte) '>');
+        newline();
+    }
+
+    /** &lt;tag&gt;texto escapado&lt;/tag&gt; en una línea. */
+    public void element(byte[] tag, CharSequence text) {
+        closePending();
+        indent();
+        out.write((byte) '<').write(tag).write((byte) '>');
+        text(text);
+        out.write(CLOSE_TAG_START).write(tag).write((byte) '>');
+        newline();
+    }
+
+    /**
+     * Agrega name="valor escapado" a la etiqueta de apertura que acaba de
+     * escribirse. Devuelve false, sin escribir nada, si ya se escribió otra
+     * cosa después de ella (o el perfil no usa atributos), si el nombre está
+     * repetido o si empieza con "xml" (reservado: xmlns declararía un espacio
+     * de nombres); en ese caso el valor debe ir como elemento.
+     */
+    public boolean attribute(byte[] name, CharSequence value) {
+        if (!pending || isReserved(name) || !addAttributeName(name)) return false;
+        out.write((byte) ' ').write(name).write((byte) '=').write((byte) '"');
+        escape(value, ATTRIBUTE_ENTITIES);
+        out.write((byte) '"');
+        return true;
+    }
+
+    private boolean addAttributeName(byte[] name) {
+        if (attributeSet != null) return attributeSet.add(ByteBuffer.wrap(name));
+        for (byte[] other : attributeNames) {
+            if (Arrays.equals(other, name)) return false;
+        }
+        attributeNames.add(name);
+        if (attributeNames.size() == ATTRIBUTE_SET_THRESHOLD) {
+            attributeSet = new HashSet<>();
+            for (byte[] n : attributeNames) attributeSet.add(ByteBuffer.wrap(n));
+        }
+        return true;
+    }
+
+    private static boolean isReserved(byte[] name) {
+        return name.length >= 3 && (name[0] | 0x20) == 'x' && (name[1] | 0x20) == 'm' && (name[2] | 0x20) == 'l';
+    }
+
+    private void closePending() {
+        if (!pending) return;
+        pending = false;
+        out.write((byte) '>');
+        newline();
+    }
+
+    /** Escribe el texto escapando &, <, >, " y ' (y los caracteres de control). */
+    public void text(CharSequence s) {
+        escape(s, ENTITIES);
+    }
+
+    private void escape(CharSequence s, byte[][] entities) {
+        if (s == null) return;
+        int run = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 128 && entities[c] != null) {
+                if (i > run) out.write(s, run, i);
+                out.write(entities[c]);
+                run = i + 1;
+            }
+        }
+        if (run < length) out.write(s, run, length);
+    }
+
+    private void indent() {
+        if (!indented) return;
+        int n = depth;
+        while (n > TABS.length) {
+            out.write(TABS);
+            n -= TABS.length;
+        }
+        out.write(TABS, 0, n);
+    }
+
+    private void newline() {
+        if (indented) out.write((byte) '\n');
+    }
+
+    /** Total de bytes escritos. */
+    public long bytesWritten() {
+        return out.bytesWritten();
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}